@@ -0,0 +1,34 @@
+package messages;
+
+import java.util.List;
+
+/**
+ * Responses to the requests of a batch in the same order
+ */
+public class BatchResponse implements Message {
+
+    private long requestId;
+    private List<Response> responses;
+
+    public BatchResponse(List<Response> responses) {
+        this.responses = responses;
+    }
+
+    @Override
+    public long getRequestId() {
+        return requestId;
+    }
+
+    @Override
+    public void setRequestId(long requestId) {
+        this.requestId = requestId;
+    }
+
+    public List<Response> getResponses() {
+        return responses;
+    }
+
+    public void setResponses(List<Response> responses) {
+        this.responses = responses;
+    }
+}
@@ -0,0 +1,14 @@
+package messages;
+
+/**
+ * Message sent between client and server
+ */
+public interface Message {
+
+    /**
+     * @return id matching a response with its request
+     */
+    long getRequestId();
+
+    void setRequestId(long requestId);
+}
@@ -4,10 +4,11 @@ import model.Movie;
 
 import java.io.Serializable;
 
-public class Request implements Serializable {
+public class Request implements Message, Serializable {
 
     static final long serialVersionUID = 2L;
 
+    private long requestId;
     private String command;
     private String argument;
     private Movie movie;
@@ -18,6 +19,16 @@ public class Request implements Serializable {
         this.movie = movie;
     }
 
+    @Override
+    public long getRequestId() {
+        return requestId;
+    }
+
+    @Override
+    public void setRequestId(long requestId) {
+        this.requestId = requestId;
+    }
+
     public String getCommand() {
         return command;
     }
@@ -41,4 +52,9 @@ public class Request implements Serializable {
     public void setMovie(Movie movie) {
         this.movie = movie;
     }
+
+    @Override
+    public String toString() {
+        return "request with command '" + command + "'";
+    }
 }
@@ -16,6 +16,10 @@ public class Movie implements Comparable<Movie>, Serializable {   //implements C
     private long length;                            //Значение поля должно быть больше 0
     private MpaaRating mpaaRating;                  //Поле может быть null
     private Person screenwriter;                    //Не указано -> Поле может быть null
+    /**
+     * name length and first chars of the name, see {@link #compareTo}
+     */
+    private long sortKey;
 
     public Movie(int id,
                  String name,
@@ -35,6 +39,7 @@ public class Movie implements Comparable<Movie>, Serializable {   //implements C
                 length);
         this.id = id;
         this.name = name;
+        this.sortKey = sortKey(name);
         this.coordinates = coordinates;
         this.creationDate = creationDate;
         this.oscarsCount = oscarsCount;
@@ -113,6 +118,7 @@ public class Movie implements Comparable<Movie>, Serializable {   //implements C
                 goldenPalmCount,
                 length);
         this.name = name;
+        this.sortKey = sortKey(name);
         this.coordinates = coordinates;
         this.oscarsCount = oscarsCount;
         this.goldenPalmCount = goldenPalmCount;
@@ -170,13 +176,28 @@ public class Movie implements Comparable<Movie>, Serializable {   //implements C
         return mpaaRating;
     }
 
+    /**
+     * Movies are ordered by name length, then by name and then by id.
+     * The precomputed sort key decides most comparisons without reading the names.
+     */
     @Override
     public int compareTo(Movie o) {
-        if (this.name.length() > o.getName().length()) {
-            return 1;
-        } else if (this.name.equals(o.getName())) {
-            return 0;
+        int result = Long.compare(sortKey, o.sortKey);
+        if (result == 0) {
+            result = name.compareTo(o.name);
+        }
+        if (result == 0) {
+            result = Integer.compare(id, o.id);
         }
-        return -1;
+        return result;
+    }
+
+    /**
+     * @param name not empty name
+     * @return name length in the high half and the first two chars in the low half
+     */
+    private static long sortKey(String name) {
+        long key = (long) name.length() << 32 | (long) name.charAt(0) << 16;
+        return name.length() > 1 ? key | name.charAt(1) : key;
     }
 }
\ No newline at end of file
@@ -1,6 +1,7 @@
 package model;
 
 import java.io.Serializable;
+import java.util.Objects;
 
 /**
  * Person description
@@ -94,4 +95,25 @@ public class Person implements Serializable {
     public Country getNationality() {
         return nationality;
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Person)) {
+            return false;
+        }
+        Person person = (Person) o;
+        return name.equals(person.name)
+                && weight.equals(person.weight)
+                && eyeColor == person.eyeColor
+                && hairColor == person.hairColor
+                && nationality == person.nationality;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(name, weight, eyeColor, hairColor, nationality);
+    }
 }
@@ -0,0 +1,200 @@
+package utils;
+
+import messages.BatchRequest;
+import messages.BatchResponse;
+import messages.Message;
+import messages.Request;
+import messages.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static utils.ConvertUtil.convertByteArrayToObject;
+import static utils.ConvertUtil.convertObjectToByteArray;
+
+/**
+ * Non-blocking connection to the server.
+ * Reading and writing are done by an event loop in its own thread,
+ * responses complete the futures of their requests matched by request id,
+ * so any number of requests can be outstanding at the same time.
+ */
+public class AsyncConnection implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(AsyncConnection.class);
+
+    private final SocketChannel channel;
+    private final Selector selector;
+    private final long timeoutMillis;
+    private final MessageFramer framer = new MessageFramer();
+    private final AtomicLong lastRequestId = new AtomicLong();
+    private final Map<Long, CompletableFuture<Message>> inFlight = new ConcurrentHashMap<>();
+    /**
+     * framed requests from callers waiting to be taken by the event loop
+     */
+    private final Queue<ByteBuffer> submitted = new ConcurrentLinkedQueue<>();
+    /**
+     * buffers taken by the event loop, the first one may be partially written
+     */
+    private final Queue<ByteBuffer> outbound = new ArrayDeque<>();
+    private volatile boolean open = true;
+
+    /**
+     * connects to the server and starts the event loop
+     *
+     * @param address       server address
+     * @param timeoutMillis time to wait for a response before its future fails with TimeoutException
+     * @throws IOException connection error
+     */
+    public AsyncConnection(InetSocketAddress address, long timeoutMillis) throws IOException {
+        this.timeoutMillis = timeoutMillis;
+        this.channel = SocketChannel.open(address);
+        this.channel.configureBlocking(false);
+        this.selector = Selector.open();
+        this.channel.register(selector, SelectionKey.OP_READ);
+        Thread thread = new Thread(this::run, "connection-reader");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * sends request
+     *
+     * @param request request
+     * @return future completed by the response
+     */
+    public CompletableFuture<Response> send(Request request) {
+        return sendMessage(request).thenApply(Response.class::cast);
+    }
+
+    /**
+     * sends batch of requests
+     *
+     * @param batch requests
+     * @return future completed by the responses
+     */
+    public CompletableFuture<BatchResponse> send(BatchRequest batch) {
+        return sendMessage(batch).thenApply(BatchResponse.class::cast);
+    }
+
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public void close() {
+        fail(new ClosedChannelException());
+    }
+
+    private CompletableFuture<Message> sendMessage(Message request) {
+        CompletableFuture<Message> future = new CompletableFuture<>();
+        long requestId = lastRequestId.incrementAndGet();
+        request.setRequestId(requestId);
+        inFlight.put(requestId, future);
+        future.whenComplete((response, e) -> inFlight.remove(requestId));
+        // checked after the registration, so a concurrent close either sees the future or is seen here
+        if (!open) {
+            future.completeExceptionally(new ClosedChannelException());
+            return future;
+        }
+        submitted.add(MessageFramer.frame(convertObjectToByteArray(request)));
+        selector.wakeup();
+        return future.orTimeout(timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * event loop: writes submitted requests and reads responses
+     */
+    private void run() {
+        SelectionKey key = channel.keyFor(selector);
+        try {
+            while (open) {
+                selector.select();
+                if (!open) {
+                    break;
+                }
+                ByteBuffer buffer;
+                while ((buffer = submitted.poll()) != null) {
+                    outbound.add(buffer);
+                }
+                write(key);
+                if (key.isValid() && key.isReadable()) {
+                    for (byte[] frame : framer.read(channel)) {
+                        complete((Message) convertByteArrayToObject(frame));
+                    }
+                }
+                selector.selectedKeys().clear();
+            }
+        } catch (IOException e) {
+            logger.error("Connection lost: " + e.getMessage());
+            fail(e);
+        } catch (RuntimeException e) {
+            // the reader stops here, so the connection is failed and the keeper opens a new one
+            logger.error("Wrong response of the server: " + e);
+            fail(new IOException("Wrong response of the server", e));
+        } finally {
+            try {
+                selector.close();
+            } catch (IOException e) {
+                logger.error(e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * writes outbound buffers until the socket buffer is full,
+     * OP_WRITE is kept only while data is pending
+     */
+    private void write(SelectionKey key) throws IOException {
+        ByteBuffer buffer;
+        while ((buffer = outbound.peek()) != null) {
+            channel.write(buffer);
+            if (buffer.hasRemaining()) {
+                key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                return;
+            }
+            outbound.poll();
+        }
+        key.interestOps(SelectionKey.OP_READ);
+    }
+
+    private void complete(Message response) {
+        CompletableFuture<Message> future = inFlight.get(response.getRequestId());
+        if (future == null) {
+            logger.warn("Skipped response to request " + response.getRequestId() + ".");
+            return;
+        }
+        future.complete(response);
+    }
+
+    /**
+     * closes the connection, stops the event loop and fails all outstanding requests
+     */
+    private void fail(IOException cause) {
+        open = false;
+        try {
+            channel.close();
+        } catch (IOException e) {
+            logger.error(e.getMessage());
+        }
+        selector.wakeup();
+        for (CompletableFuture<Message> future : inFlight.values()) {
+            future.completeExceptionally(cause);
+        }
+    }
+}
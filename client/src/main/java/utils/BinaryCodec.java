@@ -0,0 +1,273 @@
+package utils;
+
+import messages.BatchRequest;
+import messages.BatchResponse;
+import messages.Request;
+import messages.Response;
+import model.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compact binary format of the messages.
+ * A message starts with the format version, the message type and the request id,
+ * strings are UTF-8 with int length (-1 for null), enums are ordinals (-1 for null),
+ * dates are epoch days.
+ */
+public class BinaryCodec {
+
+    public static final byte VERSION = 2;
+
+    private static final byte REQUEST = 1;
+    private static final byte RESPONSE = 2;
+    private static final byte BATCH_REQUEST = 3;
+    private static final byte BATCH_RESPONSE = 4;
+
+    private static final MpaaRating[] MPAA_RATINGS = MpaaRating.values();
+    private static final Color[] COLORS = Color.values();
+    private static final Country[] COUNTRIES = Country.values();
+
+    /**
+     * encodes message
+     *
+     * @param message request, response or their batch
+     * @return message bytes
+     * @throws IllegalArgumentException unsupported message type
+     */
+    public static byte[] encode(Object message) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeByte(VERSION);
+            if (message instanceof Request) {
+                out.writeByte(REQUEST);
+                writeRequest(out, (Request) message);
+            } else if (message instanceof Response) {
+                out.writeByte(RESPONSE);
+                writeResponse(out, (Response) message);
+            } else if (message instanceof BatchRequest) {
+                out.writeByte(BATCH_REQUEST);
+                writeBatchRequest(out, (BatchRequest) message);
+            } else if (message instanceof BatchResponse) {
+                out.writeByte(BATCH_RESPONSE);
+                writeBatchResponse(out, (BatchResponse) message);
+            } else {
+                throw new IllegalArgumentException("Unsupported message type: " + message);
+            }
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * decodes message
+     *
+     * @param bytes message bytes
+     * @return request, response or their batch
+     * @throws IOException unsupported version or malformed message
+     */
+    public static Object decode(byte[] bytes) throws IOException {
+        ByteBuffer in = ByteBuffer.wrap(bytes);
+        try {
+            byte version = in.get();
+            if (version != VERSION) {
+                throw new IOException("Unsupported message version: " + version);
+            }
+            byte type = in.get();
+            switch (type) {
+                case REQUEST:
+                    return readRequest(in);
+                case RESPONSE:
+                    return readResponse(in);
+                case BATCH_REQUEST:
+                    return readBatchRequest(in);
+                case BATCH_RESPONSE:
+                    return readBatchResponse(in);
+                default:
+                    throw new IOException("Unsupported message type: " + type);
+            }
+        } catch (RuntimeException e) {
+            // underflow, a bad length, an unknown enum or an out of range date
+            throw new IOException("Malformed message: " + e, e);
+        }
+    }
+
+    private static void writeRequest(DataOutputStream out, Request request) throws IOException {
+        out.writeLong(request.getRequestId());
+        writeString(out, request.getCommand());
+        writeString(out, request.getArgument());
+        writeMovie(out, request.getMovie());
+    }
+
+    private static Request readRequest(ByteBuffer in) {
+        long requestId = in.getLong();
+        Request request = new Request(readString(in), readString(in), readMovie(in));
+        request.setRequestId(requestId);
+        return request;
+    }
+
+    private static void writeResponse(DataOutputStream out, Response response) throws IOException {
+        out.writeLong(response.getRequestId());
+        writeString(out, response.getAnswer());
+    }
+
+    private static Response readResponse(ByteBuffer in) {
+        long requestId = in.getLong();
+        Response response = new Response(readString(in));
+        response.setRequestId(requestId);
+        return response;
+    }
+
+    private static void writeBatchRequest(DataOutputStream out, BatchRequest batch) throws IOException {
+        out.writeLong(batch.getRequestId());
+        out.writeInt(batch.getRequests().size());
+        for (Request request : batch.getRequests()) {
+            writeRequest(out, request);
+        }
+    }
+
+    private static BatchRequest readBatchRequest(ByteBuffer in) {
+        long requestId = in.getLong();
+        int size = readSize(in);
+        List<Request> requests = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            requests.add(readRequest(in));
+        }
+        BatchRequest batch = new BatchRequest(requests);
+        batch.setRequestId(requestId);
+        return batch;
+    }
+
+    private static void writeBatchResponse(DataOutputStream out, BatchResponse batch) throws IOException {
+        out.writeLong(batch.getRequestId());
+        out.writeInt(batch.getResponses().size());
+        for (Response response : batch.getResponses()) {
+            writeResponse(out, response);
+        }
+    }
+
+    private static BatchResponse readBatchResponse(ByteBuffer in) {
+        long requestId = in.getLong();
+        int size = readSize(in);
+        List<Response> responses = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            responses.add(readResponse(in));
+        }
+        BatchResponse batch = new BatchResponse(responses);
+        batch.setRequestId(requestId);
+        return batch;
+    }
+
+    /**
+     * reads count of elements, every element takes at least one byte
+     */
+    private static int readSize(ByteBuffer in) {
+        int size = in.getInt();
+        if (size < 0 || size > in.remaining()) {
+            throw new IllegalArgumentException("Invalid count of elements: " + size);
+        }
+        return size;
+    }
+
+    private static void writeMovie(DataOutputStream out, Movie movie) throws IOException {
+        out.writeBoolean(movie != null);
+        if (movie == null) {
+            return;
+        }
+        out.writeInt(movie.getId());
+        writeString(out, movie.getName());
+        out.writeInt(movie.getCoordinates().getX());
+        out.writeLong(movie.getCoordinates().getY());
+        out.writeLong(movie.getCreationDate().toEpochDay());
+        out.writeInt(movie.getOscarsCount());
+        out.writeInt(movie.getGoldenPalmCount());
+        out.writeLong(movie.getLength());
+        writeEnum(out, movie.getMpaaRating());
+        writePerson(out, movie.getScreenwriter());
+    }
+
+    private static Movie readMovie(ByteBuffer in) {
+        if (in.get() == 0) {
+            return null;
+        }
+        int id = in.getInt();
+        String name = readString(in);
+        Coordinates coordinates = new Coordinates(in.getInt(), in.getLong());
+        LocalDate creationDate = LocalDate.ofEpochDay(in.getLong());
+        int oscarsCount = in.getInt();
+        int goldenPalmCount = in.getInt();
+        long length = in.getLong();
+        byte mpaaRating = in.get();
+        return new Movie(id,
+                name,
+                coordinates,
+                creationDate,
+                oscarsCount,
+                goldenPalmCount,
+                length,
+                mpaaRating < 0 ? null : MPAA_RATINGS[mpaaRating],
+                readPerson(in));
+    }
+
+    private static void writePerson(DataOutputStream out, Person person) throws IOException {
+        out.writeBoolean(person != null);
+        if (person == null) {
+            return;
+        }
+        writeString(out, person.getName());
+        out.writeInt(person.getWeight());
+        writeEnum(out, person.getEyeColor());
+        writeEnum(out, person.getHairColor());
+        writeEnum(out, person.getNationality());
+    }
+
+    private static Person readPerson(ByteBuffer in) {
+        if (in.get() == 0) {
+            return null;
+        }
+        String name = readString(in);
+        int weight = in.getInt();
+        Color eyeColor = COLORS[in.get()];
+        Color hairColor = COLORS[in.get()];
+        byte nationality = in.get();
+        return new Person(name, weight, eyeColor, hairColor, nationality < 0 ? null : COUNTRIES[nationality]);
+    }
+
+    private static void writeEnum(DataOutputStream out, Enum<?> value) throws IOException {
+        out.writeByte(value == null ? -1 : value.ordinal());
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > in.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        String value = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return value;
+    }
+}
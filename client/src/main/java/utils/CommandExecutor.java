@@ -1,9 +1,11 @@
 package utils;
 
+import messages.BatchRequest;
 import messages.Request;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.time.LocalDate;
 import java.util.*;
 import java.util.function.BiConsumer;
 
@@ -35,11 +37,25 @@ public class CommandExecutor {
         cfmTemp.put("remove_greater", CommandExecutor::removeGreater);
         cfmTemp.put("remove_lower", CommandExecutor::removeLower);
         cfmTemp.put("max_by_creation_date", CommandExecutor::maxByCreationDate);
+        cfmTemp.put("filter_by_creation_date", CommandExecutor::filterByCreationDate);
         cfmTemp.put("count_by_mpaa_rating", CommandExecutor::countByMpaaRating);
         cfmTemp.put("filter_by_mpaa_rating", CommandExecutor::filterByMpaaRating);
+        cfmTemp.put("query", CommandExecutor::query);
+        cfmTemp.put("top_k", CommandExecutor::topK);
+        cfmTemp.put("find_by_name", CommandExecutor::findByName);
+        cfmTemp.put("sum", CommandExecutor::sum);
+        cfmTemp.put("avg", CommandExecutor::avg);
+        cfmTemp.put("min", CommandExecutor::min);
+        cfmTemp.put("max", CommandExecutor::max);
+        cfmTemp.put("stats", CommandExecutor::stats);
         COMMAND_FUNCTION_MAP = Collections.unmodifiableMap(cfmTemp);
     }
 
+    /**
+     * requests of the script being read, null outside of scripts
+     */
+    private static List<Request> batch;
+
     /**
      * Starts an endless loop of receiving commands from the console
      *
@@ -68,7 +84,8 @@ public class CommandExecutor {
     }
 
     /**
-     * execute script from file
+     * execute script from file,
+     * the commands of the script and its nested scripts are sent to the server as one batch
      *
      * @param scan script file scanner
      */
@@ -77,7 +94,40 @@ public class CommandExecutor {
             System.out.println();
             throw new IllegalArgumentException("Infinite loop detected, command 'execute_script " + params + "' skipped" + "\n");
         }
-        FileAccessor.readScript(params);
+        if (batch != null) {
+            FileAccessor.readScript(params);
+            return;
+        }
+        batch = new ArrayList<>();
+        try {
+            FileAccessor.readScript(params);
+        } finally {
+            sendBatch();
+        }
+    }
+
+    /**
+     * sends the requests collected from the script
+     */
+    private static void sendBatch() {
+        List<Request> requests = batch;
+        batch = null;
+        if (requests != null && !requests.isEmpty()) {
+            ConnectionKeeper.sendBatchAndGetAnswers(new BatchRequest(requests));
+        }
+    }
+
+    /**
+     * sends request to the server or adds it to the batch while a script is read
+     *
+     * @param request request
+     */
+    private static void send(Request request) {
+        if (batch != null) {
+            batch.add(request);
+        } else {
+            ConnectionKeeper.sendMessageAndGetAnswer(request);
+        }
     }
 
     /**
@@ -118,7 +168,7 @@ public class CommandExecutor {
      */
     private static void help(String params, Scanner scan) {
         isAdditionalParamsEmpty(params);
-        ConnectionKeeper.sendMessageAndGetAnswer(new Request("help", null, null));
+        send(new Request("help", null, null));
     }
 
     /**
@@ -129,7 +179,7 @@ public class CommandExecutor {
      */
     private static void info(String params, Scanner scan) {
         isAdditionalParamsEmpty(params);
-        ConnectionKeeper.sendMessageAndGetAnswer(
+        send(
                 new Request("info", null, null));
     }
 
@@ -141,7 +191,7 @@ public class CommandExecutor {
      */
     private static void show(String params, Scanner scan) {
         isAdditionalParamsEmpty(params);
-        ConnectionKeeper.sendMessageAndGetAnswer(
+        send(
                 new Request("show", null, null));
     }
 
@@ -153,7 +203,7 @@ public class CommandExecutor {
      */
     private static void add(String params, Scanner scan) {
         isAdditionalParamsEmpty(params);
-        ConnectionKeeper.sendMessageAndGetAnswer(
+        send(
                 new Request("add", null, createMovie(scan)));
 //        System.out.println("The film is added to the collection!");
     }
@@ -166,7 +216,7 @@ public class CommandExecutor {
      */
     private static void update(String params, Scanner scan) {
         int id = Integer.parseInt(params);
-        ConnectionKeeper.sendMessageAndGetAnswer(
+        send(
                 new Request("update", String.valueOf(id), createMovie(scan)));
 //        System.out.println("The fields of the film updated!");
     }
@@ -178,7 +228,7 @@ public class CommandExecutor {
      * @param scan   helps to get the params of an object (for example for 'add' command)
      */
     private static void removeById(String params, Scanner scan) {
-        ConnectionKeeper.sendMessageAndGetAnswer(
+        send(
                 new Request("remove_by_id", String.valueOf(params), null));
 //        System.out.println("Removed by ID!");
     }
@@ -191,7 +241,7 @@ public class CommandExecutor {
      */
     private static void clear(String params, Scanner scan) {
         isAdditionalParamsEmpty(params);
-        ConnectionKeeper.sendMessageAndGetAnswer(
+        send(
                 new Request("clear", null, null));
 //        System.out.println("The collection is cleaned of elements!");
     }
@@ -204,6 +254,7 @@ public class CommandExecutor {
      */
     private static void exit(String params, Scanner scan) {
         isAdditionalParamsEmpty(params);
+        sendBatch();
         System.out.println("The program terminated.");
         System.exit(0);
     }
@@ -216,7 +267,7 @@ public class CommandExecutor {
      */
     private static void head(String params, Scanner scan) {
         isAdditionalParamsEmpty(params);
-        ConnectionKeeper.sendMessageAndGetAnswer(
+        send(
                 new Request("head", null, null));
     }
 
@@ -227,7 +278,7 @@ public class CommandExecutor {
      * @param scan   helps to get the params of an object (for example for 'add' command)
      */
     private static void removeGreater(String params, Scanner scan) {
-        ConnectionKeeper.sendMessageAndGetAnswer(
+        send(
                 new Request("remove_greater", null, createMovie(scan)));
 //        System.out.println("Greater elements are removed!");
     }
@@ -239,8 +290,8 @@ public class CommandExecutor {
      * @param scan   helps to get the params of an object (for example for 'add' command)
      */
     private static void removeLower(String params, Scanner scan) {
-        ConnectionKeeper.sendMessageAndGetAnswer(
-                new Request("remove_greater", null, createMovie(scan)));
+        send(
+                new Request("remove_lower", null, createMovie(scan)));
 //        System.out.println("Lower elements are removed!");
     }
 
@@ -252,10 +303,27 @@ public class CommandExecutor {
      */
     private static void maxByCreationDate(String params, Scanner scan) {
         isAdditionalParamsEmpty(params);
-        ConnectionKeeper.sendMessageAndGetAnswer(
+        send(
                 new Request("max_by_creation_date", null, null));
     }
 
+    /**
+     * filter_by_creation_date command
+     *
+     * @param params command additional params (id, filename etc.)
+     * @param scan   helps to get the params of an object (for example for 'add' command)
+     */
+    private static void filterByCreationDate(String params, Scanner scan) {
+        String[] dates = params.split("\\s+");
+        if (dates.length != 2) {
+            throw new IllegalArgumentException("Usage: filter_by_creation_date yyyy-mm-dd yyyy-mm-dd");
+        }
+        LocalDate.parse(dates[0]);
+        LocalDate.parse(dates[1]);
+        send(
+                new Request("filter_by_creation_date", params, null));
+    }
+
     /**
      * count_by_mpaa_rating command
      *
@@ -263,7 +331,7 @@ public class CommandExecutor {
      * @param scan   helps to get the params of an object (for example for 'add' command)
      */
     private static void countByMpaaRating(String params, Scanner scan) {
-        ConnectionKeeper.sendMessageAndGetAnswer(
+        send(
                 new Request("count_by_mpaa_rating", params, null));
     }
 
@@ -274,7 +342,95 @@ public class CommandExecutor {
      * @param scan   helps to get the params of an object (for example for 'add' command)
      */
     private static void filterByMpaaRating(String params, Scanner scan) {
-        ConnectionKeeper.sendMessageAndGetAnswer(
+        send(
                 new Request("filter_by_mpaa_rating", params, null));
     }
+
+    /**
+     * query command
+     *
+     * @param params conditions and limit of the query
+     * @param scan   helps to get the params of an object (for example for 'add' command)
+     */
+    private static void query(String params, Scanner scan) {
+        send(
+                new Request("query", params, null));
+    }
+
+    /**
+     * sum command
+     *
+     * @param params numeric field and an optional "by" field to group by
+     * @param scan   helps to get the params of an object (for example for 'add' command)
+     */
+    private static void sum(String params, Scanner scan) {
+        send(
+                new Request("sum", params, null));
+    }
+
+    /**
+     * avg command
+     *
+     * @param params numeric field and an optional "by" field to group by
+     * @param scan   helps to get the params of an object (for example for 'add' command)
+     */
+    private static void avg(String params, Scanner scan) {
+        send(
+                new Request("avg", params, null));
+    }
+
+    /**
+     * min command
+     *
+     * @param params numeric field and an optional "by" field to group by
+     * @param scan   helps to get the params of an object (for example for 'add' command)
+     */
+    private static void min(String params, Scanner scan) {
+        send(
+                new Request("min", params, null));
+    }
+
+    /**
+     * max command
+     *
+     * @param params numeric field and an optional "by" field to group by
+     * @param scan   helps to get the params of an object (for example for 'add' command)
+     */
+    private static void max(String params, Scanner scan) {
+        send(
+                new Request("max", params, null));
+    }
+
+    /**
+     * stats command
+     *
+     * @param params numeric field and an optional "by" field to group by
+     * @param scan   helps to get the params of an object (for example for 'add' command)
+     */
+    private static void stats(String params, Scanner scan) {
+        send(
+                new Request("stats", params, null));
+    }
+
+    /**
+     * top_k command
+     *
+     * @param params field and count of movies
+     * @param scan   helps to get the params of an object (for example for 'add' command)
+     */
+    private static void topK(String params, Scanner scan) {
+        send(
+                new Request("top_k", params, null));
+    }
+
+    /**
+     * find_by_name command
+     *
+     * @param params part of the name and an optional limit
+     * @param scan   helps to get the params of an object (for example for 'add' command)
+     */
+    private static void findByName(String params, Scanner scan) {
+        send(
+                new Request("find_by_name", params, null));
+    }
 }
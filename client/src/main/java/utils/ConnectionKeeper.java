@@ -1,5 +1,7 @@
 package utils;
 
+import messages.BatchRequest;
+import messages.BatchResponse;
 import messages.Request;
 import messages.Response;
 import org.slf4j.Logger;
@@ -7,15 +9,18 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
-import java.nio.ByteBuffer;
-import java.nio.channels.SocketChannel;
-
-import static utils.ConvertUtil.convertByteArrayToObject;
-import static utils.ConvertUtil.convertObjectToByteArray;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
 
+/**
+ * Blocking wrapper over {@link AsyncConnection} used by the interactive client
+ */
 public class ConnectionKeeper {
 
-    private static SocketChannel client;
+    private static final long TIMEOUT_MILLIS = Long.getLong("client.timeout", 30000);
+
+    private static AsyncConnection connection;
 
     private static final Logger logger = LoggerFactory.getLogger(ConnectionKeeper.class);
 
@@ -27,8 +32,7 @@ public class ConnectionKeeper {
         while (attempts > 0) {
             try {
                 logger.info("Trying to connect to server.");
-                client = SocketChannel.open(new InetSocketAddress("localhost", inetSocketAddress));
-                client.configureBlocking(false);
+                connection = new AsyncConnection(new InetSocketAddress("localhost", inetSocketAddress), TIMEOUT_MILLIS);
                 return;
             } catch (IOException e) {
                 try {
@@ -46,31 +50,59 @@ public class ConnectionKeeper {
         ConnectionKeeper.inetSocketAddress = inetSocketAddress;
     }
 
+    /**
+     * @return connection for asynchronous requests
+     */
+    public static AsyncConnection getConnection() {
+        return connection;
+    }
+
     public static void sendMessageAndGetAnswer(Request request) {
-        try {
-            ByteBuffer buffer = ByteBuffer.allocate(10000);
-            buffer.flip();
-            client.write(ByteBuffer.wrap(convertObjectToByteArray(request)));
-            logger.info("Send request to server.");
-            buffer.clear();
-            waitServerAnswer(buffer);
-            Response response = (Response) convertByteArrayToObject(buffer.array());
+        Response response = await(connection.send(request));
+        if (response != null) {
             logger.info(response.getAnswer());
-        } catch (IOException e) {
-            logger.error(e.getMessage());
-            connectToServer(inetSocketAddress);
-            logger.info("The connection is restored.");
         }
     }
 
-    private static void waitServerAnswer(ByteBuffer buffer) throws IOException {
-        while (client.read(buffer) == 0) {
-            try {
-                logger.info("Waiting answer.");
-                Thread.sleep(600);
-            } catch (InterruptedException e) {
-                logger.info(e.getMessage());
+    /**
+     * sends requests of a batch in one message and prints the responses
+     *
+     * @param batch requests
+     */
+    public static void sendBatchAndGetAnswers(BatchRequest batch) {
+        BatchResponse response = await(connection.send(batch));
+        if (response != null) {
+            for (Response answer : response.getResponses()) {
+                logger.info(answer.getAnswer());
+            }
+        }
+    }
+
+    /**
+     * waits for the response, closes the connection and opens a new one if it is lost
+     *
+     * @param future response future
+     * @return response or null if there is no response
+     */
+    private static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            logger.info(e.getMessage());
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof TimeoutException) {
+                logger.error("The server did not answer in time.");
+            } else if (cause instanceof IOException) {
+                logger.error("The connection is lost.");
+                connection.close();
+                connectToServer(inetSocketAddress);
+                logger.info("The connection is restored.");
+            } else {
+                logger.error("Wrong answer of the server: " + cause);
             }
         }
+        return null;
     }
 }
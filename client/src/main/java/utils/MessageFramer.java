@@ -0,0 +1,107 @@
+package utils;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Length-prefixed framing of messages on the wire.
+ * Every frame is a 4 byte big-endian payload length followed by the payload itself.
+ * One instance accumulates the bytes of one connection, so messages of any size
+ * are reassembled no matter how TCP splits or merges the packets.
+ */
+public class MessageFramer {
+
+    public static final int HEADER_SIZE = 4;
+    public static final int MAX_FRAME_SIZE = 64 * 1024 * 1024;
+    private static final int READ_BUFFER_SIZE = 8192;
+
+    private final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+    private final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+    private ByteBuffer body;
+
+    /**
+     * wraps payload into a frame
+     *
+     * @param payload message bytes
+     * @return buffer ready for writing
+     */
+    public static ByteBuffer frame(byte[] payload) {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + payload.length);
+        buffer.putInt(payload.length);
+        buffer.put(payload);
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * reads all bytes currently available in the channel without blocking
+     *
+     * @param channel non-blocking channel
+     * @return completed frames payloads, possibly empty
+     * @throws EOFException the channel is closed by the other side
+     * @throws IOException  read error or invalid frame length
+     */
+    public List<byte[]> read(ReadableByteChannel channel) throws IOException {
+        List<byte[]> frames = Collections.emptyList();
+        int count;
+        while ((count = channel.read(readBuffer)) > 0) {
+            readBuffer.flip();
+            while (readBuffer.hasRemaining()) {
+                byte[] frame = accumulate();
+                if (frame != null) {
+                    if (frames.isEmpty()) {
+                        frames = new ArrayList<>();
+                    }
+                    frames.add(frame);
+                }
+            }
+            readBuffer.clear();
+        }
+        if (count < 0) {
+            throw new EOFException("Connection closed.");
+        }
+        return frames;
+    }
+
+    /**
+     * moves bytes from read buffer to the current frame
+     *
+     * @return completed frame payload or null
+     * @throws IOException invalid frame length
+     */
+    private byte[] accumulate() throws IOException {
+        if (body == null) {
+            transfer(readBuffer, header);
+            if (header.hasRemaining()) {
+                return null;
+            }
+            header.flip();
+            int length = header.getInt();
+            header.clear();
+            if (length < 0 || length > MAX_FRAME_SIZE) {
+                throw new IOException("Invalid frame length: " + length);
+            }
+            body = ByteBuffer.allocate(length);
+        }
+        transfer(readBuffer, body);
+        if (body.hasRemaining()) {
+            return null;
+        }
+        byte[] frame = body.array();
+        body = null;
+        return frame;
+    }
+
+    private static void transfer(ByteBuffer from, ByteBuffer to) {
+        int count = Math.min(from.remaining(), to.remaining());
+        int limit = from.limit();
+        from.limit(from.position() + count);
+        to.put(from);
+        from.limit(limit);
+    }
+}
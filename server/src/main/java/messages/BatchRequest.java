@@ -0,0 +1,39 @@
+package messages;
+
+import java.util.List;
+
+/**
+ * Requests executed by the server in one go, e.g. the commands of a script
+ */
+public class BatchRequest implements Message {
+
+    private long requestId;
+    private List<Request> requests;
+
+    public BatchRequest(List<Request> requests) {
+        this.requests = requests;
+    }
+
+    @Override
+    public long getRequestId() {
+        return requestId;
+    }
+
+    @Override
+    public void setRequestId(long requestId) {
+        this.requestId = requestId;
+    }
+
+    public List<Request> getRequests() {
+        return requests;
+    }
+
+    public void setRequests(List<Request> requests) {
+        this.requests = requests;
+    }
+
+    @Override
+    public String toString() {
+        return "batch of " + requests.size() + " requests";
+    }
+}
@@ -2,16 +2,27 @@ package messages;
 
 import java.io.Serializable;
 
-public class Response implements Serializable {
+public class Response implements Message, Serializable {
 
     static final long serialVersionUID = 1L;
 
+    private long requestId;
     private String answer;
 
     public Response(String answer) {
         this.answer = answer;
     }
 
+    @Override
+    public long getRequestId() {
+        return requestId;
+    }
+
+    @Override
+    public void setRequestId(long requestId) {
+        this.requestId = requestId;
+    }
+
     public String getAnswer() {
         return answer;
     }
@@ -1,19 +1,20 @@
 package model;
 
 import java.io.Serializable;
+import java.util.Objects;
 
 /**
- * Person description
+ * Person description, immutable, so movies with the same screenwriter share one instance
  */
 public class Person implements Serializable {
 
     static final long serialVersionUID = 8L;
 
-    private String name;        //Поле не может быть null, Строка не может быть пустой
-    private Integer weight;     //Значение поля должно быть больше 0
-    private Color eyeColor;     //Поле не может быть null
-    private Color hairColor;    //Поле не может быть null
-    private Country nationality;//Поле может быть null
+    private final String name;        //Поле не может быть null, Строка не может быть пустой
+    private final Integer weight;     //Значение поля должно быть больше 0
+    private final Color eyeColor;     //Поле не может быть null
+    private final Color hairColor;    //Поле не может быть null
+    private final Country nationality;//Поле может быть null
 
     public Person(String name,
                   Integer weight,
@@ -68,17 +69,6 @@ public class Person implements Serializable {
         throw new IllegalArgumentException("Illegal argument value for person - " + "name: " + name + ", weight: " + weight);
     }
 
-    /**
-     * Update state
-     */
-    public void update(String name, Integer weight, Color eyeColor, Color hairColor, Country nationality) {
-        this.name = name;
-        this.weight = weight;
-        this.eyeColor = eyeColor;
-        this.hairColor = hairColor;
-        this.nationality = nationality;
-    }
-
     public Integer getWeight() {
         return weight;
     }
@@ -94,4 +84,25 @@ public class Person implements Serializable {
     public Country getNationality() {
         return nationality;
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Person)) {
+            return false;
+        }
+        Person person = (Person) o;
+        return name.equals(person.name)
+                && weight.equals(person.weight)
+                && eyeColor == person.eyeColor
+                && hairColor == person.hairColor
+                && nationality == person.nationality;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(name, weight, eyeColor, hairColor, nationality);
+    }
 }
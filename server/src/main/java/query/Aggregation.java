@@ -0,0 +1,109 @@
+package query;
+
+import utils.MovieStorage;
+
+import java.util.Locale;
+
+/**
+ * Statistics of an integer field of the movies, optionally grouped by an enum field,
+ * e.g. {@code avg length by mpaaRating}.
+ * <p>
+ * Every engine, or every shard of a sharded one, aggregates its own movies
+ * into an array of {@link LongStats}, one per group, and the arrays are combined,
+ * so movies are never copied and values are never boxed.
+ * Movies without a value of the field are skipped.
+ */
+public class Aggregation {
+
+    /**
+     * aggregate functions, named as the commands
+     */
+    public enum Aggregate {
+        SUM, AVG, MIN, MAX, STATS
+    }
+
+    private final Aggregate aggregate;
+    private final MovieField field;
+    private final MovieField group;
+
+    public Aggregation(Aggregate aggregate, MovieField field, MovieField group) {
+        this.aggregate = aggregate;
+        this.field = field;
+        this.group = group;
+    }
+
+    /**
+     * @param command  name of the aggregate function
+     * @param argument numeric field and an optional "by" enum field
+     * @return aggregation
+     * @throws IllegalArgumentException unknown function or field, wrong syntax
+     */
+    public static Aggregation parse(String command, String argument) {
+        Aggregate aggregate = Aggregate.valueOf(command.toUpperCase(Locale.ROOT));
+        String[] words = argument == null ? new String[0] : argument.trim().split("\\s+");
+        if (words.length != 1 && (words.length != 3 || !words[1].equalsIgnoreCase("by")) || words[0].isEmpty()) {
+            throw new IllegalArgumentException("Usage: " + command + " field [by field], fields: " + MovieField.names(true));
+        }
+        MovieField group = null;
+        if (words.length == 3) {
+            group = MovieField.of(words[2]);
+            if (!group.getType().isEnum()) {
+                throw new IllegalArgumentException("Movies can be grouped only by mpaaRating, screenwriter.eyeColor, "
+                        + "screenwriter.hairColor or screenwriter.nationality");
+            }
+        }
+        return new Aggregation(aggregate, MovieField.of(words[0], true), group);
+    }
+
+    /**
+     * @return table with a row for every group with values
+     */
+    public String execute() {
+        Object[] keys = group == null ? new Object[0] : group.getType().getEnumConstants();
+        LongStats[] stats = MovieStorage.aggregate(field, group);
+        // the last slot keeps movies without a group value
+        int slots = stats.length;
+
+        StringBuilder sb = new StringBuilder(row(group == null ? "" : group.getFieldName(), header()));
+        for (int slot = 0; slot < slots; slot++) {
+            if (group == null || stats[slot].getCount() > 0) {
+                String key = group == null ? "all" : slot < keys.length ? keys[slot].toString() : "null";
+                sb.append(row(key, values(stats[slot])));
+            }
+        }
+        return sb.toString();
+    }
+
+    private String[] header() {
+        String name = field.getFieldName();
+        if (aggregate == Aggregate.STATS) {
+            return new String[]{"count", "sum(" + name + ")", "avg(" + name + ")", "min(" + name + ")", "max(" + name + ")"};
+        }
+        return new String[]{aggregate.name().toLowerCase(Locale.ROOT) + "(" + name + ")"};
+    }
+
+    private String[] values(LongStats stats) {
+        String average = String.format(Locale.ROOT, "%.2f", stats.getAverage());
+        switch (aggregate) {
+            case SUM:
+                return new String[]{stats.getSum().toString()};
+            case AVG:
+                return new String[]{average};
+            case MIN:
+                return new String[]{Long.toString(stats.getMin())};
+            case MAX:
+                return new String[]{Long.toString(stats.getMax())};
+            default:
+                return new String[]{Long.toString(stats.getCount()), stats.getSum().toString(), average,
+                        Long.toString(stats.getMin()), Long.toString(stats.getMax())};
+        }
+    }
+
+    private static String row(String key, String[] values) {
+        StringBuilder sb = new StringBuilder(String.format("%-26s", key));
+        for (String value : values) {
+            sb.append(String.format("%22s", value));
+        }
+        return sb.append("\n").toString();
+    }
+}
@@ -0,0 +1,115 @@
+package query;
+
+import model.Movie;
+
+/**
+ * Comparison of a movie field with a value, e.g. {@code oscarsCount > 3}.
+ * Only = and != match a missing (null) value, other comparisons with null are false.
+ */
+public class Condition {
+
+    /**
+     * comparison operators, longer symbols first for parsing
+     */
+    public enum Operator {
+        LESS_OR_EQUAL("<="),
+        GREATER_OR_EQUAL(">="),
+        NOT_EQUAL("!="),
+        EQUAL("="),
+        LESS("<"),
+        GREATER(">");
+
+        private final String symbol;
+
+        Operator(String symbol) {
+            this.symbol = symbol;
+        }
+
+        public String getSymbol() {
+            return symbol;
+        }
+
+        /**
+         * @param comparison result of comparing the field with the value
+         * @return true if the operator accepts it
+         */
+        private boolean accepts(int comparison) {
+            switch (this) {
+                case LESS_OR_EQUAL:
+                    return comparison <= 0;
+                case GREATER_OR_EQUAL:
+                    return comparison >= 0;
+                case NOT_EQUAL:
+                    return comparison != 0;
+                case EQUAL:
+                    return comparison == 0;
+                case LESS:
+                    return comparison < 0;
+                default:
+                    return comparison > 0;
+            }
+        }
+
+        /**
+         * @param symbol operator symbol
+         * @return operator or null if the symbol is unknown
+         */
+        public static Operator of(String symbol) {
+            for (Operator operator : values()) {
+                if (operator.symbol.equals(symbol)) {
+                    return operator;
+                }
+            }
+            return null;
+        }
+    }
+
+    private final MovieField field;
+    private final Operator operator;
+    private final Object value;
+
+    /**
+     * @param field    movie field
+     * @param operator comparison
+     * @param value    value of the field type or null
+     * @throws IllegalArgumentException null compared by order
+     */
+    public Condition(MovieField field, Operator operator, Object value) {
+        if (value == null && operator != Operator.EQUAL && operator != Operator.NOT_EQUAL) {
+            throw new IllegalArgumentException("Only = and != can compare with null");
+        }
+        this.field = field;
+        this.operator = operator;
+        this.value = value;
+    }
+
+    public MovieField getField() {
+        return field;
+    }
+
+    public Operator getOperator() {
+        return operator;
+    }
+
+    public Object getValue() {
+        return value;
+    }
+
+    /**
+     * @param movie movie
+     * @return true if the movie matches the condition
+     */
+    public boolean test(Movie movie) {
+        Object actual = field.get(movie);
+        if (actual == null || value == null) {
+            boolean equal = actual == value;
+            return operator == Operator.EQUAL ? equal : operator == Operator.NOT_EQUAL && !equal;
+        }
+        return operator.accepts(field.compare(actual, value));
+    }
+
+    @Override
+    public String toString() {
+        return field.getFieldName() + " " + operator.getSymbol() + " " + value;
+    }
+}
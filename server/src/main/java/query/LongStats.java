@@ -0,0 +1,107 @@
+package query;
+
+import java.math.BigInteger;
+
+/**
+ * Count, sum, min and max of long values, accumulated without boxing.
+ * The sum is exact: carries out of the long are counted in a second long, so it cannot overflow.
+ * Not thread-safe, every thread fills its own stats and they are combined after.
+ */
+public class LongStats {
+    private long count;
+    private long sum;
+    /**
+     * high part of the sum, the sum is {@code high * 2^64 + sum}
+     */
+    private long high;
+    private long min = Long.MAX_VALUE;
+    private long max = Long.MIN_VALUE;
+
+    public void add(long value) {
+        count++;
+        addToSum(value);
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    /**
+     * @param other stats of other values, not changed
+     */
+    public void combine(LongStats other) {
+        count += other.count;
+        high += other.high;
+        addToSum(other.sum);
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    private void addToSum(long value) {
+        long result = sum + value;
+        // the signs of both terms differ from the sign of the result only on overflow
+        if (((sum ^ result) & (value ^ result)) < 0) {
+            high += value < 0 ? -1 : 1;
+        }
+        sum = result;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public BigInteger getSum() {
+        return BigInteger.valueOf(high).shiftLeft(64).add(BigInteger.valueOf(sum));
+    }
+
+    /**
+     * @return min or 0 if there are no values
+     */
+    public long getMin() {
+        return count == 0 ? 0 : min;
+    }
+
+    /**
+     * @return max or 0 if there are no values
+     */
+    public long getMax() {
+        return count == 0 ? 0 : max;
+    }
+
+    /**
+     * @return average or 0 if there are no values
+     */
+    public double getAverage() {
+        return count == 0 ? 0 : (high == 0 ? (double) sum : getSum().doubleValue()) / count;
+    }
+
+    /**
+     * @param group enum field or null
+     * @return empty stats for every value of the group and the last ones for movies without a group value
+     */
+    public static LongStats[] forGroups(MovieField group) {
+        int slots = group == null ? 1 : group.getType().getEnumConstants().length + 1;
+        LongStats[] stats = new LongStats[slots];
+        for (int slot = 0; slot < slots; slot++) {
+            stats[slot] = new LongStats();
+        }
+        return stats;
+    }
+
+    /**
+     * @param stats   stats of the groups
+     * @param ordinal ordinal of the group value or -1 if there is no value
+     * @return stats of the group
+     */
+    public static LongStats of(LongStats[] stats, int ordinal) {
+        return stats[ordinal < 0 ? stats.length - 1 : ordinal];
+    }
+
+    /**
+     * @param stats stats of the groups, receives the other ones
+     * @param other stats of the same groups, not changed
+     */
+    public static void combine(LongStats[] stats, LongStats[] other) {
+        for (int slot = 0; slot < stats.length; slot++) {
+            stats[slot].combine(other[slot]);
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package query;
+
+import model.Movie;
+import model.MpaaRating;
+import model.Person;
+import model.Color;
+import model.Country;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collectors;
+
+/**
+ * Fields of the movie, its coordinates and its screenwriter that commands can refer to by name,
+ * e.g. {@code oscarsCount} or {@code screenwriter.nationality}
+ */
+public enum MovieField {
+    ID("id", Integer.class, Movie::getId, false, Movie::getId),
+    NAME("name", String.class, Movie::getName),
+    COORDINATES_X("coordinates.x", Integer.class, movie -> movie.getCoordinates().getX(), true, movie -> movie.getCoordinates().getX()),
+    COORDINATES_Y("coordinates.y", Long.class, movie -> movie.getCoordinates().getY(), true, movie -> movie.getCoordinates().getY()),
+    CREATION_DATE("creationDate", LocalDate.class, Movie::getCreationDate),
+    OSCARS_COUNT("oscarsCount", Integer.class, Movie::getOscarsCount, true, Movie::getOscarsCount),
+    GOLDEN_PALM_COUNT("goldenPalmCount", Integer.class, Movie::getGoldenPalmCount, false, Movie::getGoldenPalmCount),
+    LENGTH("length", Long.class, Movie::getLength, false, Movie::getLength),
+    MPAA_RATING("mpaaRating", MpaaRating.class, Movie::getMpaaRating),
+    SCREENWRITER_NAME("screenwriter.name", String.class, movie -> screenwriter(movie, Person::getName)),
+    SCREENWRITER_WEIGHT("screenwriter.weight", Integer.class, movie -> screenwriter(movie, Person::getWeight), true, movie -> movie.getScreenwriter().getWeight()),
+    SCREENWRITER_EYE_COLOR("screenwriter.eyeColor", Color.class, movie -> screenwriter(movie, Person::getEyeColor)),
+    SCREENWRITER_HAIR_COLOR("screenwriter.hairColor", Color.class, movie -> screenwriter(movie, Person::getHairColor)),
+    SCREENWRITER_NATIONALITY("screenwriter.nationality", Country.class, movie -> screenwriter(movie, Person::getNationality));
+
+    private final String fieldName;
+    private final Class<?> type;
+    private final Function<Movie, Object> getter;
+    private final boolean nullable;
+    private final ToLongFunction<Movie> longGetter;
+
+    MovieField(String fieldName, Class<?> type, Function<Movie, Object> getter) {
+        this(fieldName, type, getter, true, null);
+    }
+
+    /**
+     * @param getter     value getter
+     * @param nullable   true if the value may be missing
+     * @param longGetter getter of the integer value without boxing, called only for present values
+     */
+    MovieField(String fieldName, Class<?> type, Function<Movie, Object> getter, boolean nullable, ToLongFunction<Movie> longGetter) {
+        this.fieldName = fieldName;
+        this.type = type;
+        this.getter = getter;
+        this.nullable = nullable;
+        this.longGetter = longGetter;
+    }
+
+    private static Object screenwriter(Movie movie, Function<Person, Object> getter) {
+        return movie.getScreenwriter() == null ? null : getter.apply(movie.getScreenwriter());
+    }
+
+    /**
+     * @return name of the field in commands
+     */
+    public String getFieldName() {
+        return fieldName;
+    }
+
+    /**
+     * @return true for integer fields
+     */
+    public boolean isNumeric() {
+        return longGetter != null;
+    }
+
+    /**
+     * @return type of the values
+     */
+    public Class<?> getType() {
+        return type;
+    }
+
+    /**
+     * @param movie movie
+     * @return value of the field or null
+     */
+    public Object get(Movie movie) {
+        return getter.apply(movie);
+    }
+
+    /**
+     * checks the value without boxing a primitive field
+     *
+     * @param movie movie
+     * @return true if the value is not null
+     */
+    public boolean hasValue(Movie movie) {
+        return !nullable || getter.apply(movie) != null;
+    }
+
+    /**
+     * @param movie movie with a value of the integer field
+     * @return value
+     * @throws UnsupportedOperationException the field is not numeric
+     */
+    public long getLong(Movie movie) {
+        if (longGetter == null) {
+            throw new UnsupportedOperationException(fieldName + " is not a number");
+        }
+        return longGetter.applyAsLong(movie);
+    }
+
+    /**
+     * @param movie movie
+     * @return ordinal of the value of the enum field or -1 if there is no value
+     */
+    public int getOrdinal(Movie movie) {
+        Object value = getter.apply(movie);
+        return value == null ? -1 : ((Enum<?>) value).ordinal();
+    }
+
+    /**
+     * @param text value of the field in a command, "null" for no value
+     * @return value of the field type or null
+     * @throws IllegalArgumentException the text is not a value of the field
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public Object parse(String text) {
+        if (text.equalsIgnoreCase("null")) {
+            return null;
+        }
+        try {
+            if (type == Integer.class) {
+                return Integer.valueOf(text);
+            }
+            if (type == Long.class) {
+                return Long.valueOf(text);
+            }
+            if (type == LocalDate.class) {
+                return LocalDate.parse(text);
+            }
+            if (type.isEnum()) {
+                return Enum.valueOf((Class<? extends Enum>) type, text.toUpperCase(Locale.ROOT));
+            }
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Wrong value of " + fieldName + ": " + text);
+        }
+        return text;
+    }
+
+    /**
+     * compares values of the field
+     *
+     * @param a not null value
+     * @param b not null value
+     * @return comparison result
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public int compare(Object a, Object b) {
+        return ((Comparable) a).compareTo(b);
+    }
+
+    /**
+     * @param name name of the field in commands, case insensitive
+     * @return field
+     * @throws IllegalArgumentException unknown field
+     */
+    public static MovieField of(String name) {
+        return of(name, false);
+    }
+
+    /**
+     * @param name    name of the field in commands, case insensitive
+     * @param numeric true if only integer fields are allowed
+     * @return field
+     * @throws IllegalArgumentException unknown field
+     */
+    public static MovieField of(String name, boolean numeric) {
+        for (MovieField field : values()) {
+            if (field.fieldName.equalsIgnoreCase(name) && (!numeric || field.isNumeric())) {
+                return field;
+            }
+        }
+        throw new IllegalArgumentException((numeric ? "Unknown numeric field: " : "Unknown field: ") + name + ", fields: " + names(numeric));
+    }
+
+    /**
+     * @param numeric true to list only integer fields
+     * @return names of the fields separated by commas
+     */
+    public static String names(boolean numeric) {
+        return Arrays.stream(values())
+                .filter(field -> !numeric || field.isNumeric())
+                .map(MovieField::getFieldName)
+                .collect(Collectors.joining(", "));
+    }
+}
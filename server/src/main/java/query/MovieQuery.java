@@ -0,0 +1,110 @@
+package query;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Conjunction of conditions with a limit of the result, parsed from text like
+ * {@code oscarsCount > 3 AND screenwriter.nationality = FRANCE LIMIT 10}.
+ * Values with spaces are quoted: {@code name = 'Alien 3'}.
+ */
+public class MovieQuery {
+    public static final int DEFAULT_LIMIT = 100;
+
+    /**
+     * operator, quoted value or word
+     */
+    private static final Pattern TOKEN = Pattern.compile("\\s*(?:(<=|>=|!=|=|<|>)|'([^']*)'|\"([^\"]*)\"|([^\\s<>=!'\"]+))");
+
+    private final List<Condition> conditions;
+    private final int limit;
+
+    public MovieQuery(List<Condition> conditions, int limit) {
+        this.conditions = Collections.unmodifiableList(new ArrayList<>(conditions));
+        this.limit = limit;
+    }
+
+    public List<Condition> getConditions() {
+        return conditions;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * @param text conditions joined by AND and an optional LIMIT, keywords are case insensitive
+     * @return query
+     * @throws IllegalArgumentException syntax error, unknown field or wrong value
+     */
+    public static MovieQuery parse(String text) {
+        List<String> tokens = new ArrayList<>();
+        List<Boolean> operators = new ArrayList<>();
+        String trimmed = text == null ? "" : text.trim();
+        Matcher matcher = TOKEN.matcher(trimmed);
+        for (int position = 0; position < trimmed.length(); position = matcher.end()) {
+            if (!matcher.region(position, trimmed.length()).lookingAt()) {
+                throw new IllegalArgumentException("Unexpected text: " + trimmed.substring(position).trim());
+            }
+            String operator = matcher.group(1);
+            String quoted = matcher.group(2) != null ? matcher.group(2) : matcher.group(3);
+            tokens.add(operator != null ? operator : quoted != null ? quoted : matcher.group(4));
+            operators.add(operator != null);
+        }
+
+        List<Condition> conditions = new ArrayList<>();
+        int limit = DEFAULT_LIMIT;
+        int i = 0;
+        while (i < tokens.size()) {
+            String word = tokens.get(i);
+            if (word.equalsIgnoreCase("LIMIT") && !operators.get(i)) {
+                if (i + 2 != tokens.size()) {
+                    throw new IllegalArgumentException("LIMIT n is expected at the end");
+                }
+                limit = parseLimit(tokens.get(i + 1));
+                break;
+            }
+            if (!conditions.isEmpty()) {
+                if (!word.equalsIgnoreCase("AND")) {
+                    throw new IllegalArgumentException("AND or LIMIT is expected instead of: " + word);
+                }
+                word = ++i < tokens.size() ? tokens.get(i) : null;
+            }
+            if (word == null || i + 2 >= tokens.size() || !operators.get(i + 1) || operators.get(i + 2)) {
+                throw new IllegalArgumentException("Condition 'field operator value' is expected");
+            }
+            MovieField field = MovieField.of(word);
+            conditions.add(new Condition(field, Condition.Operator.of(tokens.get(i + 1)), field.parse(tokens.get(i + 2))));
+            i += 3;
+        }
+        return new MovieQuery(conditions, limit);
+    }
+
+    /**
+     * @param text positive number
+     * @return limit
+     * @throws IllegalArgumentException not a positive number
+     */
+    public static int parseLimit(String text) {
+        try {
+            int limit = Integer.parseInt(text);
+            if (limit > 0) {
+                return limit;
+            }
+        } catch (NumberFormatException ignored) {
+        }
+        throw new IllegalArgumentException("Limit must be a positive number: " + text);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Condition condition : conditions) {
+            sb.append(sb.length() == 0 ? "" : " AND ").append(condition);
+        }
+        return sb.append(sb.length() == 0 ? "" : " ").append("LIMIT ").append(limit).toString();
+    }
+}
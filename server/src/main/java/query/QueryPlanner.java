@@ -0,0 +1,199 @@
+package query;
+
+import model.Movie;
+import model.MpaaRating;
+import storage.MovieSnapshot;
+import utils.MovieStorage;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Chooses how to find the movies of a query.
+ * Every index of the engine the query can use is an access path with an estimated count of the movies it reads:
+ * <ul>
+ *     <li>{@code id = n} reads at most one movie from the id index,</li>
+ *     <li>{@code mpaaRating = r} reads the exact count of movies with the rating,</li>
+ *     <li>bounds of {@code creationDate} read a range of the date index,
+ *     estimated with the default selectivities of System R: 1/10 for one day,
+ *     1/4 for a closed range and 1/3 for an open one,</li>
+ *     <li>the full scan reads all movies.</li>
+ * </ul>
+ * Fields the engine does not index are checked on the movies of the full scan.
+ * The cheapest path is taken, the conditions it does not answer are checked on the movies it reads.
+ * Every path reads movies in sorted order and stops when the limit is reached,
+ * so a query returns the same movies whichever path is taken.
+ */
+public class QueryPlanner {
+
+    /**
+     * reads movies of an access path until the visitor returns false
+     */
+    private interface Source {
+        void scan(Predicate<Movie> visitor);
+    }
+
+    /**
+     * chosen access path with the conditions left to check
+     */
+    public static final class Plan {
+        private final String description;
+        private final long cost;
+        private final Source source;
+        private final List<Condition> residual;
+        private final int limit;
+
+        private Plan(String description, long cost, Source source, List<Condition> residual, int limit) {
+            this.description = description;
+            this.cost = cost;
+            this.source = source;
+            this.residual = residual;
+            this.limit = limit;
+        }
+
+        /**
+         * @return access path and the checked conditions
+         */
+        public String getDescription() {
+            return residual.isEmpty() ? description : description + ", filter " + residual;
+        }
+
+        /**
+         * @return first limit movies matching the query in sorted order
+         */
+        public List<Movie> execute() {
+            List<Movie> movies = new ArrayList<>();
+            source.scan(movie -> {
+                for (Condition condition : residual) {
+                    if (!condition.test(movie)) {
+                        return true;
+                    }
+                }
+                movies.add(movie);
+                return movies.size() < limit;
+            });
+            return movies;
+        }
+    }
+
+    /**
+     * @param query query
+     * @return cheapest plan of the query
+     */
+    public static Plan plan(MovieQuery query) {
+        List<Condition> conditions = query.getConditions();
+        int size = MovieStorage.size();
+        Plan best = new Plan("full scan", size, visitor -> scan(MovieStorage.snapshot(), visitor),
+                conditions, query.getLimit());
+        LocalDate from = LocalDate.MIN;
+        LocalDate to = LocalDate.MAX;
+        List<Condition> dateConditions = new ArrayList<>();
+        for (Condition condition : conditions) {
+            Plan plan = null;
+            Object value = condition.getValue();
+            boolean equal = condition.getOperator() == Condition.Operator.EQUAL;
+            switch (condition.getField()) {
+                case ID:
+                    if (equal && value != null) {
+                        int id = (Integer) value;
+                        plan = new Plan("id index " + id, 1, visitor -> {
+                            Movie movie = MovieStorage.get(id);
+                            if (movie != null) {
+                                visitor.test(movie);
+                            }
+                        }, without(conditions, condition), query.getLimit());
+                    }
+                    break;
+                case MPAA_RATING:
+                    if (equal && MovieStorage.hasIndex(MovieField.MPAA_RATING)) {
+                        MpaaRating rating = (MpaaRating) value;
+                        plan = new Plan("mpaaRating index " + rating, MovieStorage.countByMpaaRating(rating),
+                                visitor -> scan(MovieStorage.snapshotByMpaaRating(rating), visitor),
+                                without(conditions, condition), query.getLimit());
+                    }
+                    break;
+                case CREATION_DATE:
+                    if (value != null && condition.getOperator() != Condition.Operator.NOT_EQUAL
+                            && MovieStorage.hasIndex(MovieField.CREATION_DATE)) {
+                        LocalDate date = (LocalDate) value;
+                        switch (condition.getOperator()) {
+                            case GREATER:
+                                from = later(from, date.plusDays(1));
+                                break;
+                            case GREATER_OR_EQUAL:
+                                from = later(from, date);
+                                break;
+                            case LESS:
+                                to = earlier(to, date.minusDays(1));
+                                break;
+                            case LESS_OR_EQUAL:
+                                to = earlier(to, date);
+                                break;
+                            default:
+                                from = later(from, date);
+                                to = earlier(to, date);
+                        }
+                        dateConditions.add(condition);
+                    }
+                    break;
+                default:
+            }
+            if (plan != null && plan.cost < best.cost) {
+                best = plan;
+            }
+        }
+        if (!dateConditions.isEmpty()) {
+            Plan plan = datePlan(from, to, size, conditions, dateConditions, query.getLimit());
+            if (plan.cost < best.cost) {
+                best = plan;
+            }
+        }
+        return best;
+    }
+
+    private static Plan datePlan(LocalDate from, LocalDate to, int size, List<Condition> conditions,
+                                 List<Condition> dateConditions, int limit) {
+        List<Condition> residual = new ArrayList<>(conditions);
+        residual.removeAll(dateConditions);
+        if (from.isAfter(to)) {
+            return new Plan("empty creationDate range", 0, visitor -> {
+            }, residual, limit);
+        }
+        boolean closed = !from.equals(LocalDate.MIN) && !to.equals(LocalDate.MAX);
+        long cost = from.equals(to) ? size / 10 : closed ? size / 4 : size / 3;
+        LocalDate first = from;
+        LocalDate last = to;
+        return new Plan("creationDate index " + (closed ? from + " .. " + to : from.equals(LocalDate.MIN) ? ".. " + to : from + " .."),
+                cost, visitor -> scan(MovieStorage.snapshotByCreationDate(first, last), visitor), residual, limit);
+    }
+
+    private static LocalDate later(LocalDate date, LocalDate other) {
+        return other.isAfter(date) ? other : date;
+    }
+
+    private static LocalDate earlier(LocalDate date, LocalDate other) {
+        return other.isBefore(date) ? other : date;
+    }
+
+    private static List<Condition> without(List<Condition> conditions, Condition used) {
+        List<Condition> residual = new ArrayList<>(conditions);
+        residual.remove(used);
+        return Collections.unmodifiableList(residual);
+    }
+
+    /**
+     * reads the sorted movies until the visitor returns false and closes the snapshot
+     */
+    private static void scan(MovieSnapshot snapshot, Predicate<Movie> visitor) {
+        try (MovieSnapshot movies = snapshot) {
+            for (Movie movie : movies) {
+                if (!visitor.test(movie)) {
+                    return;
+                }
+            }
+        }
+    }
+}
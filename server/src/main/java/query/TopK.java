@@ -0,0 +1,57 @@
+package query;
+
+import model.Movie;
+import utils.MovieStorage;
+
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * k movies with the greatest values of a field, ties in sorted order, movies without a value are skipped.
+ * <p>
+ * The latest creation dates are read from the date index of the storage.
+ * Other fields are collected by the storage engine without copying the movies:
+ * every shard keeps its best k movies in a bounded heap with the worst of them on top,
+ * so a movie costs O(log k), and only the k best movies of every shard are merged.
+ */
+public class TopK {
+    private final MovieField field;
+    private final int k;
+    private final Comparator<Movie> ranking;
+
+    public TopK(MovieField field, int k) {
+        this.field = field;
+        this.k = k;
+        Comparator<Movie> byValue = field.isNumeric()
+                ? Comparator.comparingLong(field::getLong)
+                : (a, b) -> field.compare(field.get(a), field.get(b));
+        this.ranking = byValue.reversed().thenComparing(Comparator.naturalOrder());
+    }
+
+    /**
+     * @param argument field and count of movies
+     * @return top k query
+     * @throws IllegalArgumentException unknown field or wrong count
+     */
+    public static TopK parse(String argument) {
+        String[] words = argument == null ? new String[0] : argument.trim().split("\\s+");
+        if (words.length != 2) {
+            throw new IllegalArgumentException("Usage: top_k field k, fields: " + MovieField.names(false));
+        }
+        return new TopK(MovieField.of(words[0]), MovieQuery.parseLimit(words[1]));
+    }
+
+    public MovieField getField() {
+        return field;
+    }
+
+    /**
+     * @return at most k movies from the best one
+     */
+    public List<Movie> execute() {
+        if (field == MovieField.CREATION_DATE) {
+            return MovieStorage.getLatest(k);
+        }
+        return MovieStorage.getTop(k, field::hasValue, ranking);
+    }
+}
@@ -0,0 +1,80 @@
+package server;
+
+import messages.Message;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import utils.CommandExecutor;
+import utils.MessageFramer;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+
+import static utils.ConvertUtil.convertByteArrayToRequest;
+import static utils.ConvertUtil.convertObjectToByteArray;
+
+/**
+ * Serves one client with blocking I/O, meant to be run in its own virtual thread
+ */
+public class BlockingConnection implements Runnable {
+
+    private static final Logger logger = LoggerFactory.getLogger(BlockingConnection.class);
+
+    private final SocketChannel socket;
+
+    public BlockingConnection(SocketChannel socket) {
+        this.socket = socket;
+    }
+
+    @Override
+    public void run() {
+        logger.info("Client connected.");
+        try (DataInputStream in = new DataInputStream(Channels.newInputStream(socket))) {
+            while (true) {
+                Message request = convertByteArrayToRequest(readFrame(in));
+                logger.info("Received " + request + " from client.");
+                Message response = CommandExecutor.executeMessage(request);
+                ByteBuffer buffer = MessageFramer.frame(convertObjectToByteArray(response));
+                while (buffer.hasRemaining()) {
+                    socket.write(buffer);
+                }
+                logger.info("Response send to client.");
+            }
+        } catch (EOFException e) {
+            logger.warn("Client disconnected.");
+        } catch (IOException e) {
+            logger.warn("Client disconnected: " + e.getMessage());
+        } catch (RuntimeException e) {
+            logger.error("Client error: " + e);
+        }
+    }
+
+    /**
+     * reads one frame blocking until it is complete
+     *
+     * @param in socket input
+     * @return frame payload
+     * @throws IOException read error or invalid frame length
+     */
+    private static byte[] readFrame(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > MessageFramer.MAX_FRAME_SIZE) {
+            throw new IOException("Invalid frame length: " + length);
+        }
+        // the frame grows as its bytes arrive instead of trusting the header
+        byte[] frame = new byte[Math.min(length, MessageFramer.INITIAL_BODY_SIZE)];
+        int received = 0;
+        while (true) {
+            in.readFully(frame, received, frame.length - received);
+            received = frame.length;
+            if (received == length) {
+                return frame;
+            }
+            frame = Arrays.copyOf(frame, MessageFramer.grow(frame.length, received + 1, length));
+        }
+    }
+}
@@ -1,30 +1,148 @@
 package server;
 
+import messages.Message;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import utils.MessageFramer;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Queue;
 
+/**
+ * State of one connected client, attached to its selection key.
+ * Owns the accumulator of incoming frames, the queue of received requests
+ * and the queue of outgoing buffers.
+ * Must be used only by the thread of the selector it is registered with.
+ * <p>
+ * A client may send many requests without waiting for the responses.
+ * Requests of one connection are executed one at a time in arrival order,
+ * so responses are sent in the same order as the requests;
+ * requests of different connections are executed in parallel.
+ * While {@link ServerConfig#PIPELINE_DEPTH} requests are waiting,
+ * the connection stops reading.
+ */
 public class ClientConnection {
 
     private static final Logger logger = LoggerFactory.getLogger(ClientConnection.class);
 
-    private SocketChannel socket;
+    private final SocketChannel socket;
+    private SelectionKey key;
+    private final MessageFramer framer = new MessageFramer();
+    private final Queue<ByteBuffer> outbound = new ArrayDeque<>();
+    private final Queue<Message> pending = new ArrayDeque<>();
+    private boolean executing;
 
     public ClientConnection(SocketChannel socketChannel) throws IOException {
         this.socket = socketChannel;
     }
 
-    public SocketChannel getSocket() {
-        return socket;
+    /**
+     * registers the connection for reading with itself as the key attachment
+     *
+     * @param selector selector
+     * @throws ClosedChannelException the connection is closed
+     */
+    public void register(Selector selector) throws ClosedChannelException {
+        key = socket.register(selector, SelectionKey.OP_READ, this);
+    }
+
+    /**
+     * reads all available bytes
+     *
+     * @return completed frames payloads
+     * @throws IOException read error or the client disconnected
+     */
+    public List<byte[]> read() throws IOException {
+        return framer.read(socket);
+    }
+
+    /**
+     * queues received request, stops reading if too many requests are waiting
+     *
+     * @param request client request or batch of requests
+     */
+    public void addRequest(Message request) {
+        pending.add(request);
+        if (pending.size() >= ServerConfig.PIPELINE_DEPTH) {
+            key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+        }
+    }
+
+    /**
+     * takes the next request for execution if no request of the connection is executing now
+     *
+     * @return request or null
+     */
+    public Message nextRequest() {
+        if (executing || pending.isEmpty()) {
+            return null;
+        }
+        executing = true;
+        Message request = pending.poll();
+        if (pending.size() < ServerConfig.PIPELINE_DEPTH) {
+            key.interestOps(key.interestOps() | SelectionKey.OP_READ);
+        }
+        return request;
     }
 
-    public void setSocket(SocketChannel socket) {
-        this.socket = socket;
+    /**
+     * marks the executing request as completed
+     */
+    public void completeRequest() {
+        executing = false;
+    }
+
+    /**
+     * queues the buffer and writes as much as the socket accepts now
+     *
+     * @param buffer data to send
+     * @throws IOException write error
+     */
+    public void send(ByteBuffer buffer) throws IOException {
+        outbound.add(buffer);
+        flush();
+    }
+
+    /**
+     * writes queued buffers until the socket buffer is full,
+     * OP_WRITE is kept only while data is pending
+     *
+     * @throws IOException write error
+     */
+    public void flush() throws IOException {
+        ByteBuffer buffer;
+        while ((buffer = outbound.peek()) != null) {
+            socket.write(buffer);
+            if (buffer.hasRemaining()) {
+                key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+                return;
+            }
+            outbound.poll();
+        }
+        key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+    }
+
+    public boolean isOpen() {
+        return key != null && key.isValid();
+    }
+
+    public SocketChannel getSocket() {
+        return socket;
     }
 
     public void disconnect() {
+        outbound.clear();
+        pending.clear();
+        if (key != null) {
+            key.cancel();
+        }
         try {
             socket.close();
         } catch (IOException e) {
@@ -0,0 +1,164 @@
+package server;
+
+import messages.Message;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import utils.MessageFramer;
+
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static utils.ConvertUtil.convertByteArrayToRequest;
+import static utils.ConvertUtil.convertObjectToByteArray;
+
+/**
+ * I/O event loop serving a part of the connected clients in its own thread
+ */
+public class Reactor implements Runnable {
+
+    private static final Logger logger = LoggerFactory.getLogger(Reactor.class);
+
+    private final Selector selector;
+    private final RequestDispatcher dispatcher;
+    /**
+     * tasks from other threads to be executed by the selector thread
+     */
+    private final Queue<Runnable> selectorTasks = new ConcurrentLinkedQueue<>();
+
+    public Reactor(RequestDispatcher dispatcher) throws IOException {
+        this.selector = Selector.open();
+        this.dispatcher = dispatcher;
+    }
+
+    /**
+     * hands accepted client over to this reactor, can be called from any thread
+     *
+     * @param client accepted channel
+     */
+    public void register(SocketChannel client) {
+        runOnSelector(() -> {
+            try {
+                client.configureBlocking(false);
+                new ClientConnection(client).register(selector);
+                logger.info("Client connected.");
+            } catch (IOException e) {
+                logger.error(e.getMessage());
+            }
+        });
+    }
+
+    @Override
+    public void run() {
+        Iterator<SelectionKey> iterator;
+        SelectionKey key;
+
+        while (true) {
+            try {
+                int select = selector.select();
+                runSelectorTasks();
+                if (select == 0) {
+                    continue;
+                }
+            } catch (IOException e) {
+                logger.error(e.getMessage());
+                return;
+            }
+
+            iterator = selector.selectedKeys().iterator();
+            while (iterator.hasNext()) {
+                key = iterator.next();
+                iterator.remove();
+
+                // the key is cancelled if a selector task disconnected the client
+                if (!key.isValid()) {
+                    continue;
+                }
+                ClientConnection connection = (ClientConnection) key.attachment();
+                try {
+                    if (key.isWritable()) {
+                        connection.flush();
+                    }
+                    if (key.isReadable()) {
+                        for (byte[] frame : connection.read()) {
+                            Message request = convertByteArrayToRequest(frame);
+                            logger.info("Received " + request + " from client.");
+                            connection.addRequest(request);
+                        }
+                        dispatchNext(connection);
+                    }
+                } catch (IOException e) {
+                    disconnect(connection);
+                } catch (RuntimeException e) {
+                    // a broken client must not stop the loop serving the others
+                    logger.error("Client error: " + e);
+                    disconnect(connection);
+                }
+            }
+        }
+    }
+
+    /**
+     * passes the next request of the connection to the workers
+     *
+     * @param connection client connection
+     */
+    private void dispatchNext(ClientConnection connection) {
+        Message request = connection.nextRequest();
+        if (request != null) {
+            dispatcher.dispatch(request, response -> runOnSelector(() -> {
+                connection.completeRequest();
+                sendResponse(connection, response);
+                dispatchNext(connection);
+            }));
+        }
+    }
+
+    /**
+     * schedules task for the selector thread and wakes it up
+     *
+     * @param task task
+     */
+    private void runOnSelector(Runnable task) {
+        selectorTasks.add(task);
+        selector.wakeup();
+    }
+
+    private void runSelectorTasks() {
+        Runnable task;
+        while ((task = selectorTasks.poll()) != null) {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                logger.error("Selector task error: " + e);
+            }
+        }
+    }
+
+    /**
+     * queues response for writing to the client
+     *
+     * @param connection client connection
+     * @param response   executed command response
+     */
+    private void sendResponse(ClientConnection connection, Message response) {
+        if (!connection.isOpen()) {
+            return;
+        }
+        try {
+            connection.send(MessageFramer.frame(convertObjectToByteArray(response)));
+            logger.info("Response queued for client.");
+        } catch (IOException e) {
+            disconnect(connection);
+        }
+    }
+
+    private void disconnect(ClientConnection connection) {
+        logger.warn("Client disconnected.");
+        connection.disconnect();
+    }
+}
@@ -0,0 +1,80 @@
+package server;
+
+import messages.BatchRequest;
+import messages.BatchResponse;
+import messages.Message;
+import messages.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import utils.CommandExecutor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Executes requests on a bounded pool of worker threads,
+ * so the selector thread is busy only with I/O
+ */
+public class RequestDispatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(RequestDispatcher.class);
+
+    private static final String BUSY = "Server is busy, try again later.";
+
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * @param poolSize   count of worker threads
+     * @param queueDepth max count of requests waiting for a worker
+     */
+    public RequestDispatcher(int poolSize, int queueDepth) {
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueDepth),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "worker-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * executes request in a worker thread
+     *
+     * @param message    client request or batch of requests
+     * @param onComplete receives the response in the worker thread
+     */
+    public void dispatch(Message message, Consumer<Message> onComplete) {
+        try {
+            executor.execute(() -> onComplete.accept(CommandExecutor.executeMessage(message)));
+        } catch (RejectedExecutionException e) {
+            logger.warn("Request queue is full, " + message + " rejected.");
+            onComplete.accept(busy(message));
+        }
+    }
+
+    /**
+     * @param message rejected request or batch
+     * @return response of the same kind saying that the server is busy
+     */
+    private static Message busy(Message message) {
+        Message response;
+        if (message instanceof BatchRequest) {
+            List<Response> responses = new ArrayList<>();
+            for (int i = 0; i < ((BatchRequest) message).getRequests().size(); i++) {
+                responses.add(new Response(BUSY));
+            }
+            response = new BatchResponse(responses);
+        } else {
+            response = new Response(BUSY);
+        }
+        response.setRequestId(message.getRequestId());
+        return response;
+    }
+}
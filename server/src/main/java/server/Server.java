@@ -1,7 +1,6 @@
 package server;
 
 import messages.Request;
-import messages.Response;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import utils.CommandExecutor;
@@ -9,15 +8,12 @@ import utils.CommandExecutor;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.URISyntaxException;
-import java.nio.ByteBuffer;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
 import java.util.*;
 
-import static utils.ConvertUtil.convertByteArrayToObject;
-import static utils.ConvertUtil.convertObjectToByteArray;
 import static utils.FileValidator.validateFileAndReadXml;
 
 public class Server {
@@ -25,9 +21,8 @@ public class Server {
     private static final Logger logger = LoggerFactory.getLogger(Server.class);
 
     private final ServerSocketChannel server;
-    private final List<ClientConnection> clients = new ArrayList<>();
-    private Selector selector;
     private final String fileName;
+    private final RequestDispatcher dispatcher = new RequestDispatcher(ServerConfig.WORKERS, ServerConfig.QUEUE_DEPTH);
 
     /**
      * Constructor for creating a server object
@@ -40,10 +35,7 @@ public class Server {
     public Server(String fileName, String inetSocketAddress) throws IOException, URISyntaxException, InterruptedException {
         this.fileName = fileName;
         this.server = ServerSocketChannel.open();
-        selector = Selector.open();
-        server.configureBlocking(false);
         server.socket().bind(new InetSocketAddress(Integer.valueOf(inetSocketAddress)));
-        server.register(selector, SelectionKey.OP_ACCEPT);
         logger.info("Server started.");
         if (validateFileAndReadXml(fileName)) {
             run();
@@ -52,7 +44,7 @@ public class Server {
     }
 
     /**
-     * server command execution thread
+     * starts server console thread and accepts clients in the configured mode
      */
     private void run() throws IOException, InterruptedException {
 
@@ -82,9 +74,29 @@ public class Server {
         });
         thread.start();
 
-        ByteBuffer buffer = ByteBuffer.allocate(10000);
+        if (ServerConfig.MODE.equals("virtual")) {
+            runVirtualThreads();
+        } else {
+            runReactors();
+        }
+    }
+
+    /**
+     * starts I/O reactors, then accepts clients handing them round-robin to the reactors
+     */
+    private void runReactors() throws IOException {
+        Selector selector = Selector.open();
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+
+        Reactor[] reactors = new Reactor[ServerConfig.REACTORS];
+        for (int i = 0; i < reactors.length; i++) {
+            reactors[i] = new Reactor(dispatcher);
+            new Thread(reactors[i], "reactor-" + (i + 1)).start();
+        }
+        int next = 0;
+
         Iterator<SelectionKey> iterator;
-        SelectionKey key;
 
         while (true) {
 
@@ -95,41 +107,27 @@ public class Server {
 
             iterator = selector.selectedKeys().iterator();
             while (iterator.hasNext()) {
-                key = iterator.next();
+                iterator.next();
                 iterator.remove();
 
-                if (key.channel() == server) {
-
-                    SocketChannel client = server.accept();
-
-                    if (client != null) {
-                        client.configureBlocking(false);
-                        client.register(selector, SelectionKey.OP_READ);
-                        logger.info("Client connected.");
-                    }
-                } else {
-                    try {
-                        buffer.clear();
-                        int countOfBytes = ((SocketChannel) key.channel()).read(buffer);
-                        if (countOfBytes < 1) {
-                            return;
-                        }
-                        Request request = (Request) convertByteArrayToObject(buffer.array());
-                        logger.info("Received Request from client with command: " + request.getCommand() + ".");
-                        Response response = CommandExecutor.startExecution(request);
-                        logger.info("Sending Response to client.");
-                        ((SocketChannel) key.channel()).write(ByteBuffer.wrap(convertObjectToByteArray(response)));
-                        logger.info("Response send to client.");
-                    } catch (IOException e) {
-                        logger.warn("Client disconnected.");
-                        try {
-                            key.cancel();
-                        } catch (Exception ex) {
-                            continue;
-                        }
-                    }
+                SocketChannel client = server.accept();
+                if (client != null) {
+                    reactors[next].register(client);
+                    next = (next + 1) % reactors.length;
                 }
             }
         }
     }
+
+    /**
+     * accepts clients serving each of them with blocking I/O in a new virtual thread
+     */
+    private void runVirtualThreads() throws IOException {
+        Thread.Builder builder = Thread.ofVirtual().name("client-", 1);
+        logger.info("Serving clients in virtual threads.");
+        while (true) {
+            SocketChannel client = server.accept();
+            builder.start(new BlockingConnection(client));
+        }
+    }
 }
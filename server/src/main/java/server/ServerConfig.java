@@ -0,0 +1,33 @@
+package server;
+
+/**
+ * Server settings passed as system properties, e.g. {@code -Dserver.workers=4}
+ */
+public class ServerConfig {
+
+    /**
+     * "reactor" serves clients by selector threads,
+     * "virtual" serves every client in its own virtual thread with blocking I/O
+     */
+    public static final String MODE = System.getProperty("server.mode", "reactor");
+
+    /**
+     * number of I/O threads serving accepted clients
+     */
+    public static final int REACTORS = Integer.getInteger("server.reactors", 1);
+
+    /**
+     * number of threads executing commands
+     */
+    public static final int WORKERS = Integer.getInteger("server.workers", Runtime.getRuntime().availableProcessors());
+
+    /**
+     * max count of requests waiting for a free worker
+     */
+    public static final int QUEUE_DEPTH = Integer.getInteger("server.queue", 1024);
+
+    /**
+     * max count of received requests of one connection waiting for execution
+     */
+    public static final int PIPELINE_DEPTH = Integer.getInteger("server.pipeline", 64);
+}
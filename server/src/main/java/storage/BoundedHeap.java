@@ -0,0 +1,46 @@
+package storage;
+
+import model.Movie;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * First k movies of an order seen so far, the last of them on top,
+ * so a movie costs O(log k) and heaps of parallel tasks are merged by offering their movies
+ */
+class BoundedHeap {
+    private final int k;
+    private final Comparator<Movie> order;
+    private final PriorityQueue<Movie> heap;
+
+    BoundedHeap(int k, Comparator<Movie> order) {
+        this.k = k;
+        this.order = order;
+        this.heap = new PriorityQueue<>(order.reversed());
+    }
+
+    void offer(Movie movie) {
+        if (heap.size() < k) {
+            heap.add(movie);
+        } else if (order.compare(movie, heap.peek()) < 0) {
+            heap.poll();
+            heap.add(movie);
+        }
+    }
+
+    void merge(BoundedHeap other) {
+        other.heap.forEach(this::offer);
+    }
+
+    /**
+     * @return movies in the order
+     */
+    List<Movie> toList() {
+        List<Movie> movies = new ArrayList<>(heap);
+        movies.sort(order);
+        return movies;
+    }
+}
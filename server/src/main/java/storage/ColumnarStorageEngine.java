@@ -0,0 +1,518 @@
+package storage;
+
+import model.*;
+import query.LongStats;
+import query.MovieField;
+import utils.IntIntHashMap;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.function.IntToLongFunction;
+import java.util.function.IntUnaryOperator;
+import java.util.stream.IntStream;
+
+/**
+ * Keeps movie fields in parallel primitive arrays, one array per field,
+ * a movie is a row index in all the arrays.
+ * Movie objects are created only when they are returned,
+ * so a stored movie takes about 60 bytes besides its strings instead of
+ * the object graph of the movie, its coordinates, date, person and boxed numbers.
+ * Counts, filters and aggregates scan the arrays of the needed fields only.
+ * <p>
+ * Rows are dense: a removed row is replaced by the last one.
+ * The id index maps ids to rows.
+ * The sort order keeps ids, because rows of the movies change.
+ * <p>
+ * The sorted view iterates a copy of the order and creates every movie when it is reached,
+ * skipping movies removed in between.
+ * A snapshot copies the rows of the live movies in sorted order into new columns under the read lock,
+ * so it reads the movies as of one moment for the cost of copying the arrays, writers wait only for the copy.
+ */
+public class ColumnarStorageEngine extends LockedStorageEngine {
+
+    private static final int MIN_CAPACITY = 16;
+    private static final MpaaRating[] MPAA_RATINGS = MpaaRating.values();
+    private static final Color[] COLORS = Color.values();
+    private static final Country[] COUNTRIES = Country.values();
+
+    private int[] ids;
+    private String[] names;
+    private int[] xs;
+    private long[] ys;
+    private int[] creationDays;
+    private int[] oscarsCounts;
+    private int[] goldenPalmCounts;
+    private long[] lengths;
+    /**
+     * rating ordinal or -1
+     */
+    private byte[] mpaaRatings;
+    /**
+     * null if the movie has no screenwriter
+     */
+    private String[] writerNames;
+    private int[] writerWeights;
+    private byte[] eyeColors;
+    private byte[] hairColors;
+    /**
+     * nationality ordinal or -1
+     */
+    private byte[] nationalities;
+    private int rows;
+
+    private final IntIntHashMap rowById = new IntIntHashMap(-1);
+    private final MovieOrder order = new MovieOrder(new MovieOrder.Movies() {
+        @Override
+        public int compareNames(int id, int other) {
+            return MovieOrder.compareNames(names[rowById.get(id)], names[rowById.get(other)]);
+        }
+
+        @Override
+        public int compareName(int id, String name) {
+            return MovieOrder.compareNames(names[rowById.get(id)], name);
+        }
+
+        @Override
+        public int id(int id) {
+            return id;
+        }
+    });
+
+    public ColumnarStorageEngine() {
+        this(MIN_CAPACITY);
+    }
+
+    private ColumnarStorageEngine(int capacity) {
+        allocate(capacity);
+    }
+
+    @Override
+    public String getType() {
+        return "Columnar arrays";
+    }
+
+    @Override
+    public void add(Movie movie) {
+        write(() -> {
+            if (rows == ids.length) {
+                grow(rows * 2);
+            }
+            int row = rows++;
+            ids[row] = movie.getId();
+            creationDays[row] = (int) movie.getCreationDate().toEpochDay();
+            setFields(row, movie);
+            rowById.put(movie.getId(), row);
+            order.add(movie.getId());
+            nameIndex.add(movie.getId(), movie.getName());
+        });
+    }
+
+    @Override
+    public void clear() {
+        write(() -> {
+            allocate(MIN_CAPACITY);
+            rows = 0;
+            rowById.clear();
+            order.clear();
+            nameIndex.clear();
+        });
+    }
+
+    @Override
+    public int size() {
+        return optimisticRead(() -> rows);
+    }
+
+    @Override
+    public boolean contains(int id) {
+        return optimisticRead(() -> rowById.containsKey(id));
+    }
+
+    @Override
+    public Movie get(int id) {
+        return read(() -> {
+            int row = rowById.get(id);
+            return row < 0 ? null : toMovie(row);
+        });
+    }
+
+    @Override
+    protected Movie matchName(int id, String text) {
+        int row = rowById.get(id);
+        return row >= 0 && NameIndex.contains(names[row], text) ? toMovie(row) : null;
+    }
+
+    @Override
+    public Movie head() {
+        return sortedRead(order, () -> {
+            if (order.size() == 0) {
+                throw new NoSuchElementException();
+            }
+            return toMovie(rowById.get(order.first()));
+        });
+    }
+
+    @Override
+    public boolean update(int id, Movie movie) {
+        long stamp = lock.writeLock();
+        try {
+            int row = rowById.get(id);
+            if (row < 0) {
+                return false;
+            }
+            order.remove(id);
+            nameIndex.remove(id, names[row]);
+            setFields(row, movie);
+            order.add(id);
+            nameIndex.add(id, movie.getName());
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public boolean removeById(int id) {
+        long stamp = lock.writeLock();
+        try {
+            int row = rowById.get(id);
+            if (row < 0) {
+                return false;
+            }
+            order.remove(id);
+            removeRow(row);
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public int removeGreater(Movie movie) {
+        return write(() -> order.removeGreater(movie.getName(), id -> removeRow(rowById.get(id))));
+    }
+
+    @Override
+    public int removeLower(Movie movie) {
+        return write(() -> order.removeLower(movie.getName(), id -> removeRow(rowById.get(id))));
+    }
+
+    @Override
+    public Movie getMaxCreationDate() {
+        return read(() -> {
+            if (rows == 0) {
+                throw new NoSuchElementException();
+            }
+            int max = 0;
+            for (int row = 1; row < rows; row++) {
+                if (creationDays[row] > creationDays[max]) {
+                    max = row;
+                }
+            }
+            return toMovie(max);
+        });
+    }
+
+    @Override
+    public List<Movie> filterByCreationDate(LocalDate from, LocalDate to) {
+        long first = from.toEpochDay();
+        long last = to.toEpochDay();
+        return read(() -> {
+            // day in the high half and row in the low half, so sorting the keys sorts rows by date
+            long[] found = new long[16];
+            int count = 0;
+            for (int row = 0; row < rows; row++) {
+                int day = creationDays[row];
+                if (day >= first && day <= last) {
+                    if (count == found.length) {
+                        found = Arrays.copyOf(found, count * 2);
+                    }
+                    found[count++] = (long) day << 32 | row;
+                }
+            }
+            Arrays.sort(found, 0, count);
+            List<Movie> movies = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                movies.add(toMovie((int) found[i]));
+            }
+            return movies;
+        });
+    }
+
+    @Override
+    public int countByMpaaRating(MpaaRating rating) {
+        byte code = code(rating);
+        return optimisticRead(() -> {
+            byte[] column = mpaaRatings;
+            // the column may be replaced by a bigger one while rows are added
+            int end = Math.min(rows, column.length);
+            int count = 0;
+            for (int row = 0; row < end; row++) {
+                if (column[row] == code) {
+                    count++;
+                }
+            }
+            return count;
+        });
+    }
+
+    @Override
+    public List<Movie> filterByMpaaRating(MpaaRating rating) {
+        byte code = code(rating);
+        return read(() -> {
+            List<Movie> movies = new ArrayList<>();
+            for (int row = 0; row < rows; row++) {
+                if (mpaaRatings[row] == code) {
+                    movies.add(toMovie(row));
+                }
+            }
+            return movies;
+        });
+    }
+
+    /**
+     * splits the rows among the threads of the common fork-join pool under the read lock,
+     * every thread keeps its own stats
+     */
+    @Override
+    public LongStats[] aggregate(MovieField field, MovieField group) {
+        IntToLongFunction value = column(field);
+        IntUnaryOperator key = groupColumn(group);
+        return read(() -> IntStream.range(0, rows).parallel()
+                .filter(row -> field != MovieField.SCREENWRITER_WEIGHT || writerNames[row] != null)
+                .collect(() -> LongStats.forGroups(group),
+                        (stats, row) -> LongStats.of(stats, key.applyAsInt(row)).add(value.applyAsLong(row)),
+                        LongStats::combine));
+    }
+
+    /**
+     * @param field integer field
+     * @return value of the field in a row
+     * @throws IllegalArgumentException the field is not stored as a number
+     */
+    private IntToLongFunction column(MovieField field) {
+        switch (field) {
+            case ID:
+                return row -> ids[row];
+            case COORDINATES_X:
+                return row -> xs[row];
+            case COORDINATES_Y:
+                return row -> ys[row];
+            case OSCARS_COUNT:
+                return row -> oscarsCounts[row];
+            case GOLDEN_PALM_COUNT:
+                return row -> goldenPalmCounts[row];
+            case LENGTH:
+                return row -> lengths[row];
+            case SCREENWRITER_WEIGHT:
+                return row -> writerWeights[row];
+            default:
+                throw new IllegalArgumentException(field.getFieldName() + " is not a number");
+        }
+    }
+
+    /**
+     * @param group enum field or null
+     * @return ordinal of the value of the field in a row or -1 if there is no value
+     * @throws IllegalArgumentException the field is not an enum
+     */
+    private IntUnaryOperator groupColumn(MovieField group) {
+        if (group == null) {
+            return row -> -1;
+        }
+        switch (group) {
+            case MPAA_RATING:
+                return row -> mpaaRatings[row];
+            case SCREENWRITER_EYE_COLOR:
+                return row -> writerNames[row] == null ? -1 : eyeColors[row];
+            case SCREENWRITER_HAIR_COLOR:
+                return row -> writerNames[row] == null ? -1 : hairColors[row];
+            case SCREENWRITER_NATIONALITY:
+                return row -> writerNames[row] == null ? -1 : nationalities[row];
+            default:
+                throw new IllegalArgumentException(group.getFieldName() + " is not an enum");
+        }
+    }
+
+    @Override
+    public Iterable<Movie> getSortedByName() {
+        return () -> new Iterator<Movie>() {
+            private final int[] snapshot = sortedRead(order, order::toArray);
+            private int index;
+            private Movie next = advance();
+
+            /**
+             * @return next movie still stored or null
+             */
+            private Movie advance() {
+                while (index < snapshot.length) {
+                    int id = snapshot[index++];
+                    Movie movie = read(() -> {
+                        int row = rowById.get(id);
+                        return row < 0 ? null : toMovie(row);
+                    });
+                    if (movie != null) {
+                        return movie;
+                    }
+                }
+                return null;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public Movie next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                Movie movie = next;
+                next = advance();
+                return movie;
+            }
+        };
+    }
+
+    @Override
+    public MovieSnapshot snapshot() {
+        ColumnarStorageEngine copy = sortedRead(order, () -> {
+            int[] sortedIds = order.toArray();
+            ColumnarStorageEngine columns = new ColumnarStorageEngine(Math.max(sortedIds.length, MIN_CAPACITY));
+            for (int id : sortedIds) {
+                columns.copyRow(this, rowById.get(id), columns.rows++);
+            }
+            return columns;
+        });
+        return new MovieSnapshot() {
+            @Override
+            public Iterator<Movie> iterator() {
+                return IntStream.range(0, copy.rows).mapToObj(copy::toMovie).iterator();
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    /**
+     * writes fields of the movie except id and creation date to the row
+     */
+    private void setFields(int row, Movie movie) {
+        names[row] = movie.getName();
+        xs[row] = movie.getCoordinates().getX();
+        ys[row] = movie.getCoordinates().getY();
+        oscarsCounts[row] = movie.getOscarsCount();
+        goldenPalmCounts[row] = movie.getGoldenPalmCount();
+        lengths[row] = movie.getLength();
+        mpaaRatings[row] = code(movie.getMpaaRating());
+        Person writer = movie.getScreenwriter();
+        if (writer == null) {
+            writerNames[row] = null;
+            return;
+        }
+        writerNames[row] = writer.getName();
+        writerWeights[row] = writer.getWeight();
+        eyeColors[row] = code(writer.getEyeColor());
+        hairColors[row] = code(writer.getHairColor());
+        nationalities[row] = code(writer.getNationality());
+    }
+
+    /**
+     * creates movie from the row
+     */
+    private Movie toMovie(int row) {
+        Person writer = null;
+        if (writerNames[row] != null) {
+            writer = new Person(writerNames[row],
+                    writerWeights[row],
+                    COLORS[eyeColors[row]],
+                    COLORS[hairColors[row]],
+                    nationalities[row] < 0 ? null : COUNTRIES[nationalities[row]]);
+        }
+        return new Movie(ids[row],
+                names[row],
+                new Coordinates(xs[row], ys[row]),
+                LocalDate.ofEpochDay(creationDays[row]),
+                oscarsCounts[row],
+                goldenPalmCounts[row],
+                lengths[row],
+                mpaaRatings[row] < 0 ? null : MPAA_RATINGS[mpaaRatings[row]],
+                writer);
+    }
+
+    /**
+     * moves the last row to the removed one
+     */
+    private void removeRow(int row) {
+        rowById.remove(ids[row]);
+        nameIndex.remove(ids[row], names[row]);
+        int last = --rows;
+        if (row != last) {
+            copyRow(this, last, row);
+            rowById.put(ids[row], row);
+        }
+        names[last] = null;
+        writerNames[last] = null;
+    }
+
+    /**
+     * copies all fields of the row of the source engine to the row
+     */
+    private void copyRow(ColumnarStorageEngine source, int sourceRow, int row) {
+        ids[row] = source.ids[sourceRow];
+        names[row] = source.names[sourceRow];
+        xs[row] = source.xs[sourceRow];
+        ys[row] = source.ys[sourceRow];
+        creationDays[row] = source.creationDays[sourceRow];
+        oscarsCounts[row] = source.oscarsCounts[sourceRow];
+        goldenPalmCounts[row] = source.goldenPalmCounts[sourceRow];
+        lengths[row] = source.lengths[sourceRow];
+        mpaaRatings[row] = source.mpaaRatings[sourceRow];
+        writerNames[row] = source.writerNames[sourceRow];
+        writerWeights[row] = source.writerWeights[sourceRow];
+        eyeColors[row] = source.eyeColors[sourceRow];
+        hairColors[row] = source.hairColors[sourceRow];
+        nationalities[row] = source.nationalities[sourceRow];
+    }
+
+    private static byte code(Enum<?> value) {
+        return (byte) (value == null ? -1 : value.ordinal());
+    }
+
+    private void allocate(int capacity) {
+        ids = new int[capacity];
+        names = new String[capacity];
+        xs = new int[capacity];
+        ys = new long[capacity];
+        creationDays = new int[capacity];
+        oscarsCounts = new int[capacity];
+        goldenPalmCounts = new int[capacity];
+        lengths = new long[capacity];
+        mpaaRatings = new byte[capacity];
+        writerNames = new String[capacity];
+        writerWeights = new int[capacity];
+        eyeColors = new byte[capacity];
+        hairColors = new byte[capacity];
+        nationalities = new byte[capacity];
+    }
+
+    private void grow(int capacity) {
+        ids = Arrays.copyOf(ids, capacity);
+        names = Arrays.copyOf(names, capacity);
+        xs = Arrays.copyOf(xs, capacity);
+        ys = Arrays.copyOf(ys, capacity);
+        creationDays = Arrays.copyOf(creationDays, capacity);
+        oscarsCounts = Arrays.copyOf(oscarsCounts, capacity);
+        goldenPalmCounts = Arrays.copyOf(goldenPalmCounts, capacity);
+        lengths = Arrays.copyOf(lengths, capacity);
+        mpaaRatings = Arrays.copyOf(mpaaRatings, capacity);
+        writerNames = Arrays.copyOf(writerNames, capacity);
+        writerWeights = Arrays.copyOf(writerWeights, capacity);
+        eyeColors = Arrays.copyOf(eyeColors, capacity);
+        hairColors = Arrays.copyOf(hairColors, capacity);
+        nationalities = Arrays.copyOf(nationalities, capacity);
+    }
+}
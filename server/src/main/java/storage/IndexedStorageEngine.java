@@ -0,0 +1,537 @@
+package storage;
+
+import model.Movie;
+import model.MpaaRating;
+import query.LongStats;
+import query.MovieField;
+import utils.IntHashMap;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+/**
+ * Keeps movie objects sorted by name in a skip list, so show and save
+ * iterate them in order without copying and sorting.
+ * Movies are found by id in the primary index in constant time,
+ * the secondary indexes group movies by mpaa rating
+ * and by creation date (epoch day) in date order.
+ * Every group is a skip list sorted like the movies, so reads of an index come in sorted order
+ * and a query with a limit stops reading when it is reached.
+ * <p>
+ * Every mutation makes a new version of the storage (multiversion concurrency control):
+ * entries are stamped with the version that created them and the version that removed them,
+ * a removed entry stays in the skip list and the secondary indexes while a reader may still see it.
+ * Readers pin the current version and see exactly the entries alive in it without locking,
+ * so a long save does not block writers and writers do not disturb it.
+ * Entries removed before the oldest pinned version are reclaimed by the next mutation
+ * or when the oldest reader leaves.
+ * <p>
+ * Writers are serialized by the write lock, ids and counts of the latest version are read optimistically.
+ * Stored movies are never mutated, an update stores a new object.
+ */
+public class IndexedStorageEngine extends LockedStorageEngine {
+    private static final int NO_RATING = MpaaRating.values().length;
+    private final ConcurrentSkipListSet<Entry> sorted = new ConcurrentSkipListSet<>();
+    private final IntHashMap<Entry> idIndex = new IntHashMap<>();
+    private final EnumMap<MpaaRating, NavigableSet<Entry>> ratingIndex = new EnumMap<>(MpaaRating.class);
+    private final NavigableSet<Entry> noRating = new ConcurrentSkipListSet<>();
+    private final ConcurrentSkipListMap<Long, NavigableSet<Entry>> dateIndex = new ConcurrentSkipListMap<>();
+    private final int[] ratingCounts = new int[NO_RATING + 1];
+    private final ArrayDeque<Entry> retired = new ArrayDeque<>();
+    private final ConcurrentSkipListMap<Long, Integer> pins = new ConcurrentSkipListMap<>();
+    private volatile long version;
+    private volatile long horizon;
+    private volatile int size;
+
+    public IndexedStorageEngine() {
+        for (MpaaRating rating : MpaaRating.values()) {
+            ratingIndex.put(rating, new ConcurrentSkipListSet<>());
+        }
+    }
+
+    /**
+     * stored movie with the versions it is alive in
+     */
+    private static final class Entry implements Comparable<Entry> {
+        private final Movie movie;
+        private final long created;
+        private volatile long removed = Long.MAX_VALUE;
+
+        private Entry(Movie movie, long created) {
+            this.movie = movie;
+            this.created = created;
+        }
+
+        private boolean isVisibleAt(long snapshot) {
+            return created <= snapshot && snapshot < removed;
+        }
+
+        private boolean isLive() {
+            return removed == Long.MAX_VALUE;
+        }
+
+        @Override
+        public int compareTo(Entry o) {
+            int result = movie.compareTo(o.movie);
+            return result != 0 ? result : Long.compare(created, o.created);
+        }
+    }
+
+    /**
+     * pinned version of the storage
+     */
+    private final class Snapshot implements MovieSnapshot {
+        private final long pinned = pin();
+        private final Iterable<Entry> entries;
+        private boolean closed;
+
+        private Snapshot() {
+            this(sorted);
+        }
+
+        /**
+         * @param entries entries in sorted order, only the ones alive in the pinned version are read
+         */
+        private Snapshot(Iterable<Entry> entries) {
+            this.entries = entries;
+        }
+
+        @Override
+        public Iterator<Movie> iterator() {
+            return StreamSupport.stream(entries.spliterator(), false)
+                    .filter(entry -> entry.isVisibleAt(pinned))
+                    .map(entry -> entry.movie)
+                    .iterator();
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                unpin(pinned);
+            }
+        }
+    }
+
+    @Override
+    public String getType() {
+        return "ConcurrentSkipListSet";
+    }
+
+    @Override
+    public void add(Movie movie) {
+        write(() -> {
+            long next = version + 1;
+            insert(movie, next);
+            nameIndex.add(movie.getId(), movie.getName());
+            commit(next);
+        });
+    }
+
+    @Override
+    public void clear() {
+        write(() -> {
+            long next = version + 1;
+            for (Entry entry : idIndex) {
+                retire(entry, next);
+            }
+            idIndex.clear();
+            nameIndex.clear();
+            commit(next);
+        });
+    }
+
+    @Override
+    public Movie head() {
+        try (MovieSnapshot snapshot = snapshot()) {
+            return snapshot.iterator().next();
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean contains(int id) {
+        return optimisticRead(() -> idIndex.containsKey(id));
+    }
+
+    @Override
+    public Movie get(int id) {
+        Entry entry = optimisticRead(() -> idIndex.get(id));
+        return entry == null ? null : entry.movie;
+    }
+
+    @Override
+    protected Movie matchName(int id, String text) {
+        Entry entry = idIndex.get(id);
+        return entry != null && NameIndex.contains(entry.movie.getName(), text) ? entry.movie : null;
+    }
+
+    @Override
+    public boolean update(int id, Movie movie) {
+        return write(() -> {
+            Entry old = idIndex.get(id);
+            if (old == null) {
+                return false;
+            }
+            Movie updated = new Movie(id,
+                    movie.getName(),
+                    movie.getCoordinates(),
+                    old.movie.getCreationDate(),
+                    movie.getOscarsCount(),
+                    movie.getGoldenPalmCount(),
+                    movie.getLength(),
+                    movie.getMpaaRating(),
+                    movie.getScreenwriter());
+            long next = version + 1;
+            retire(old, next);
+            insert(updated, next);
+            nameIndex.remove(id, old.movie.getName());
+            nameIndex.add(id, updated.getName());
+            commit(next);
+            return true;
+        });
+    }
+
+    @Override
+    public boolean removeById(int id) {
+        return write(() -> {
+            Entry removed = idIndex.remove(id);
+            if (removed == null) {
+                return false;
+            }
+            long next = version + 1;
+            retire(removed, next);
+            nameIndex.remove(id, removed.movie.getName());
+            commit(next);
+            return true;
+        });
+    }
+
+    /**
+     * removes the tail of the sorted set after the movie name
+     */
+    @Override
+    public int removeGreater(Movie movie) {
+        return removeRange(sorted.tailSet(probe(movie, Integer.MAX_VALUE, Long.MAX_VALUE), false));
+    }
+
+    /**
+     * removes the head of the sorted set before the movie name
+     */
+    @Override
+    public int removeLower(Movie movie) {
+        return removeRange(sorted.headSet(probe(movie, Integer.MIN_VALUE, Long.MIN_VALUE), false));
+    }
+
+    /**
+     * removes the live movies of the range of the sorted set in one version
+     *
+     * @param range view of the sorted set
+     * @return count of removed movies
+     */
+    private int removeRange(NavigableSet<Entry> range) {
+        return write(() -> {
+            long next = version + 1;
+            int count = 0;
+            for (Entry entry : range) {
+                if (entry.isLive()) {
+                    idIndex.remove(entry.movie.getId());
+                    retire(entry, next);
+                    nameIndex.remove(entry.movie.getId(), entry.movie.getName());
+                    count++;
+                }
+            }
+            commit(next);
+            return count;
+        });
+    }
+
+    /**
+     * @param movie   movie with the name to compare with
+     * @param id      Integer.MIN_VALUE to be before or Integer.MAX_VALUE to be after all movies with the name
+     * @param created Long.MIN_VALUE or Long.MAX_VALUE, the same side as the id
+     * @return entry used only as a bound of the sorted set
+     */
+    private static Entry probe(Movie movie, int id, long created) {
+        return new Entry(new Movie(id,
+                movie.getName(),
+                movie.getCoordinates(),
+                movie.getCreationDate(),
+                movie.getOscarsCount(),
+                movie.getGoldenPalmCount(),
+                movie.getLength(),
+                movie.getMpaaRating(),
+                movie.getScreenwriter()), created);
+    }
+
+    /**
+     * adds movie created in the version to the sorted set and the indexes, under the write lock
+     */
+    private void insert(Movie movie, long next) {
+        Entry entry = new Entry(movie, next);
+        sorted.add(entry);
+        idIndex.put(movie.getId(), entry);
+        ratingBucket(movie.getMpaaRating()).add(entry);
+        dateIndex.computeIfAbsent(movie.getCreationDate().toEpochDay(), day -> new ConcurrentSkipListSet<>()).add(entry);
+        ratingCounts[ratingSlot(movie.getMpaaRating())]++;
+        size++;
+    }
+
+    /**
+     * marks entry removed in the version, it is reclaimed when no reader sees it,
+     * the caller removes it from the id index
+     */
+    private void retire(Entry entry, long next) {
+        entry.removed = next;
+        retired.add(entry);
+        ratingCounts[ratingSlot(entry.movie.getMpaaRating())]--;
+        size--;
+    }
+
+    /**
+     * publishes the version made under the write lock and reclaims entries no reader sees
+     */
+    private void commit(long next) {
+        version = next;
+        reclaim();
+    }
+
+    /**
+     * removes retired entries invisible to every pinned version, under the write lock.
+     * The horizon is raised before the pins are read, so a reader pinning an older version
+     * concurrently either is seen here or sees the new horizon and pins again.
+     */
+    private void reclaim() {
+        if (retired.isEmpty()) {
+            return;
+        }
+        long bound = version;
+        horizon = bound;
+        Map.Entry<Long, Integer> oldest = pins.firstEntry();
+        if (oldest != null) {
+            bound = Math.min(bound, oldest.getKey());
+        }
+        Entry entry;
+        while ((entry = retired.peek()) != null && entry.removed <= bound) {
+            retired.poll();
+            purge(entry);
+        }
+    }
+
+    /**
+     * removes retired entry from the sorted set and the secondary indexes
+     */
+    private void purge(Entry entry) {
+        sorted.remove(entry);
+        ratingBucket(entry.movie.getMpaaRating()).remove(entry);
+        dateIndex.computeIfPresent(entry.movie.getCreationDate().toEpochDay(), (day, entries) -> {
+            entries.remove(entry);
+            return entries.isEmpty() ? null : entries;
+        });
+    }
+
+    /**
+     * @return current version, kept from reclamation until it is unpinned
+     */
+    private long pin() {
+        while (true) {
+            long snapshot = version;
+            pins.merge(snapshot, 1, Integer::sum);
+            if (horizon <= snapshot) {
+                return snapshot;
+            }
+            // entries of the version may be reclaimed already
+            release(snapshot);
+        }
+    }
+
+    /**
+     * unpins the version and reclaims entries kept only for it if the writers are idle
+     */
+    private void unpin(long snapshot) {
+        release(snapshot);
+        Long oldest = pins.isEmpty() ? null : pins.firstKey();
+        if (oldest == null || oldest > snapshot) {
+            long stamp = lock.tryWriteLock();
+            if (stamp != 0) {
+                try {
+                    reclaim();
+                } finally {
+                    lock.unlockWrite(stamp);
+                }
+            }
+        }
+    }
+
+    private void release(long snapshot) {
+        pins.computeIfPresent(snapshot, (key, count) -> count == 1 ? null : count - 1);
+    }
+
+    /**
+     * @param rating rating or null
+     * @return entries with the rating
+     */
+    private NavigableSet<Entry> ratingBucket(MpaaRating rating) {
+        return rating == null ? noRating : ratingIndex.get(rating);
+    }
+
+    /**
+     * @param rating rating or null
+     * @return index of the rating count
+     */
+    private static int ratingSlot(MpaaRating rating) {
+        return rating == null ? NO_RATING : rating.ordinal();
+    }
+
+    @Override
+    public Movie getMaxCreationDate() {
+        try (Snapshot snapshot = new Snapshot()) {
+            for (Set<Entry> day : dateIndex.descendingMap().values()) {
+                for (Entry entry : day) {
+                    if (entry.isVisibleAt(snapshot.pinned)) {
+                        return entry.movie;
+                    }
+                }
+            }
+            throw new NoSuchElementException();
+        }
+    }
+
+    @Override
+    public List<Movie> filterByCreationDate(LocalDate from, LocalDate to) {
+        try (Snapshot snapshot = new Snapshot()) {
+            List<Movie> movies = new ArrayList<>();
+            for (Set<Entry> day : dateIndex.subMap(from.toEpochDay(), true, to.toEpochDay(), true).values()) {
+                collect(day, snapshot, movies);
+            }
+            return movies;
+        }
+    }
+
+    /**
+     * reads days of the date index from the latest one
+     */
+    @Override
+    public List<Movie> getLatest(int count) {
+        try (Snapshot snapshot = new Snapshot()) {
+            List<Movie> movies = new ArrayList<>();
+            for (Set<Entry> day : dateIndex.descendingMap().values()) {
+                collect(day, snapshot, movies);
+                if (movies.size() >= count) {
+                    return new ArrayList<>(movies.subList(0, count));
+                }
+            }
+            return movies;
+        }
+    }
+
+    @Override
+    public int countByMpaaRating(MpaaRating rating) {
+        return optimisticRead(() -> ratingCounts[ratingSlot(rating)]);
+    }
+
+    @Override
+    public List<Movie> filterByMpaaRating(MpaaRating rating) {
+        try (Snapshot snapshot = new Snapshot()) {
+            List<Movie> movies = new ArrayList<>();
+            collect(ratingBucket(rating), snapshot, movies);
+            return movies;
+        }
+    }
+
+    /**
+     * adds movies of the entries visible in the snapshot
+     */
+    private static void collect(Set<Entry> entries, Snapshot snapshot, List<Movie> movies) {
+        for (Entry entry : entries) {
+            if (entry.isVisibleAt(snapshot.pinned)) {
+                movies.add(entry.movie);
+            }
+        }
+    }
+
+    /**
+     * splits the skip list of a pinned version among the threads of the common fork-join pool
+     */
+    @Override
+    public LongStats[] aggregate(MovieField field, MovieField group) {
+        try (Snapshot snapshot = new Snapshot()) {
+            return sorted.parallelStream()
+                    .filter(entry -> entry.isVisibleAt(snapshot.pinned) && field.hasValue(entry.movie))
+                    .collect(() -> LongStats.forGroups(group),
+                            (stats, entry) -> LongStats.of(stats, group == null ? -1 : group.getOrdinal(entry.movie))
+                                    .add(field.getLong(entry.movie)),
+                            LongStats::combine);
+        }
+    }
+
+    /**
+     * splits the skip list of a pinned version among the threads of the common fork-join pool,
+     * every thread keeps its own bounded heap
+     */
+    @Override
+    public List<Movie> getTop(int count, Predicate<Movie> filter, Comparator<Movie> order) {
+        try (Snapshot snapshot = new Snapshot()) {
+            return sorted.parallelStream()
+                    .filter(entry -> entry.isVisibleAt(snapshot.pinned) && filter.test(entry.movie))
+                    .collect(() -> new BoundedHeap(count, order),
+                            (heap, entry) -> heap.offer(entry.movie),
+                            BoundedHeap::merge)
+                    .toList();
+        }
+    }
+
+    @Override
+    public MovieSnapshot snapshot() {
+        return new Snapshot();
+    }
+
+    @Override
+    public boolean hasIndex(MovieField field) {
+        return field == MovieField.ID || field == MovieField.MPAA_RATING || field == MovieField.CREATION_DATE;
+    }
+
+    @Override
+    public MovieSnapshot snapshotByMpaaRating(MpaaRating rating) {
+        return new Snapshot(ratingBucket(rating));
+    }
+
+    /**
+     * merges the sorted days of the range
+     */
+    @Override
+    public MovieSnapshot snapshotByCreationDate(LocalDate from, LocalDate to) {
+        Collection<NavigableSet<Entry>> days = dateIndex.subMap(from.toEpochDay(), true, to.toEpochDay(), true).values();
+        return new Snapshot(() -> new MergingIterator<>(days.stream().map(Set::iterator).collect(Collectors.toList()),
+                Comparator.naturalOrder()));
+    }
+
+    @Override
+    public List<Movie> getStorageAsList() {
+        try (MovieSnapshot snapshot = snapshot()) {
+            List<Movie> movies = new ArrayList<>();
+            snapshot.forEach(movies::add);
+            return movies;
+        }
+    }
+
+    /**
+     * iterates the live entries of the latest versions
+     */
+    @Override
+    public Iterable<Movie> getSortedByName() {
+        return () -> sorted.stream()
+                .filter(Entry::isLive)
+                .map(entry -> entry.movie)
+                .iterator();
+    }
+}
@@ -0,0 +1,117 @@
+package storage;
+
+import model.Movie;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Supplier;
+
+/**
+ * Base of the engines guarded by one stamped lock:
+ * mutations hold the write lock, reads hold the read lock,
+ * cheap reads are tried optimistically without locking
+ * and repeated under the read lock only if a write interfered.
+ * The name index is changed by the writers together with the movies,
+ * a search reads it and checks the candidates against the stored names under the read lock.
+ */
+public abstract class LockedStorageEngine implements StorageEngine {
+
+    protected final StampedLock lock = new StampedLock();
+    protected final NameIndex nameIndex = new NameIndex();
+
+    @Override
+    public List<Movie> findByName(String text, int limit) {
+        String normalized = NameIndex.normalize(text);
+        return read(() -> {
+            List<Movie> movies = new ArrayList<>();
+            for (int id : nameIndex.find(normalized)) {
+                Movie movie = matchName(id, normalized);
+                if (movie != null) {
+                    movies.add(movie);
+                    if (movies.size() == limit) {
+                        break;
+                    }
+                }
+            }
+            return movies;
+        });
+    }
+
+    /**
+     * checks a candidate of the name index against the stored name, under the read lock
+     *
+     * @param id   id of a stored movie
+     * @param text normalized part of the name
+     * @return the movie if its name contains the text, otherwise null
+     */
+    protected abstract Movie matchName(int id, String text);
+
+    protected void write(Runnable writer) {
+        long stamp = lock.writeLock();
+        try {
+            writer.run();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    protected <T> T write(Supplier<T> writer) {
+        long stamp = lock.writeLock();
+        try {
+            return writer.get();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    protected <T> T read(Supplier<T> reader) {
+        long stamp = lock.readLock();
+        try {
+            return reader.get();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * reads without locking, repeats the read under the read lock if a write interfered.
+     * The reader may see a state torn by a concurrent write, so it must not fail or loop on it:
+     * it reads every array once into a local and keeps its indexes within the array
+     *
+     * @param reader read of the storage state
+     * @return read result
+     */
+    protected <T> T optimisticRead(Supplier<T> reader) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            T result = reader.get();
+            if (lock.validate(stamp)) {
+                return result;
+            }
+        }
+        return read(reader);
+    }
+
+    /**
+     * reads the sorted order, sorting it under the write lock first if keys were added
+     *
+     * @param order  order of the movies
+     * @param reader read of the sorted order
+     * @return read result
+     */
+    <T> T sortedRead(MovieOrder order, Supplier<T> reader) {
+        long stamp = lock.readLock();
+        try {
+            if (order.isSorted()) {
+                return reader.get();
+            }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+        return write(() -> {
+            order.sort();
+            return reader.get();
+        });
+    }
+}
@@ -0,0 +1,59 @@
+package storage;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * k-way merge of sorted iterators, takes the least head from a heap of the iterators
+ *
+ * @param <T> element type
+ */
+class MergingIterator<T> implements Iterator<T> {
+    private final PriorityQueue<Head<T>> heads;
+
+    /**
+     * next element of an iterator
+     */
+    private static class Head<T> {
+        private final T value;
+        private final Iterator<T> rest;
+
+        private Head(T value, Iterator<T> rest) {
+            this.value = value;
+            this.rest = rest;
+        }
+    }
+
+    /**
+     * @param iterators iterators sorted by the order
+     * @param order     order of the elements
+     */
+    MergingIterator(List<? extends Iterator<T>> iterators, Comparator<? super T> order) {
+        heads = new PriorityQueue<>(Math.max(1, iterators.size()), (a, b) -> order.compare(a.value, b.value));
+        iterators.forEach(this::advance);
+    }
+
+    private void advance(Iterator<T> iterator) {
+        if (iterator.hasNext()) {
+            heads.add(new Head<>(iterator.next(), iterator));
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        return !heads.isEmpty();
+    }
+
+    @Override
+    public T next() {
+        Head<T> head = heads.poll();
+        if (head == null) {
+            throw new NoSuchElementException();
+        }
+        advance(head.rest);
+        return head.value;
+    }
+}
@@ -0,0 +1,245 @@
+package storage;
+
+import model.Movie;
+import utils.IntIntHashMap;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Int keys of stored movies in the order of {@link Movie#compareTo}.
+ * Added keys are appended to an unsorted tail, the tail is sorted and merged
+ * into the sorted part when the order is needed, so adding n keys takes O(n log n)
+ * instead of an insertion per key.
+ * Removed keys are not searched for: the removal is only counted, and
+ * the first copies of the key are dropped when the order is sorted next,
+ * so an update (a removal and an addition of the key) takes O(1).
+ * Not thread-safe, the engine guards it with its lock.
+ */
+class MovieOrder {
+
+    /**
+     * names and ids of the movies stored under the keys,
+     * names are compared as by {@link #compareNames}, engines may compare them without creating strings
+     */
+    interface Movies {
+        int compareNames(int key, int other);
+
+        int compareName(int key, String name);
+
+        int id(int key);
+    }
+
+    private final Movies movies;
+    private int[] keys = new int[16];
+    private int size;
+    private int sortedSize;
+    /**
+     * count of the removals of a key since the last sort, the removed copies precede the live one
+     */
+    private final IntIntHashMap removals = new IntIntHashMap(0);
+    private int removedCount;
+
+    MovieOrder(Movies movies) {
+        this.movies = movies;
+    }
+
+    /**
+     * @return count of the keys not removed
+     */
+    int size() {
+        return size - removedCount;
+    }
+
+    boolean isSorted() {
+        return sortedSize == size && removedCount == 0;
+    }
+
+    void add(int key) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+        }
+        keys[size++] = key;
+    }
+
+    /**
+     * marks the stored key as removed, the order is compacted when it is sorted next
+     * or when removed keys outnumber the others
+     */
+    void remove(int key) {
+        removals.put(key, removals.get(key) + 1);
+        removedCount++;
+        if (removedCount > size - removedCount) {
+            sort();
+        }
+    }
+
+    void clear() {
+        keys = new int[16];
+        size = 0;
+        sortedSize = 0;
+        removals.clear();
+        removedCount = 0;
+    }
+
+    /**
+     * @return key of the first movie, the order must be sorted
+     */
+    int first() {
+        return keys[0];
+    }
+
+    /**
+     * @return copy of the keys, the order must be sorted
+     */
+    int[] toArray() {
+        return Arrays.copyOf(keys, size);
+    }
+
+    /**
+     * removes keys of the movies with names greater than the name
+     *
+     * @param name    name
+     * @param removed called for every removed key
+     * @return count of removed keys
+     */
+    int removeGreater(String name, IntConsumer removed) {
+        sort();
+        int from = search(name, Integer.MAX_VALUE);
+        for (int i = from; i < size; i++) {
+            removed.accept(keys[i]);
+        }
+        int count = size - from;
+        size = from;
+        sortedSize = from;
+        return count;
+    }
+
+    /**
+     * removes keys of the movies with names lower than the name
+     *
+     * @param name    name
+     * @param removed called for every removed key
+     * @return count of removed keys
+     */
+    int removeLower(String name, IntConsumer removed) {
+        sort();
+        int to = search(name, Integer.MIN_VALUE);
+        for (int i = 0; i < to; i++) {
+            removed.accept(keys[i]);
+        }
+        System.arraycopy(keys, to, keys, 0, size - to);
+        size -= to;
+        sortedSize -= to;
+        return to;
+    }
+
+    /**
+     * sorts the added keys and merges them into the sorted part
+     */
+    void sort() {
+        if (isSorted()) {
+            return;
+        }
+        if (removedCount > 0) {
+            compact();
+        }
+        int[] merged = new int[keys.length];
+        mergeSort(keys, merged, sortedSize, size);
+        merge(keys, 0, sortedSize, sortedSize, size, merged, 0);
+        keys = merged;
+        sortedSize = size;
+    }
+
+    /**
+     * drops the removed copies of the keys keeping the order of the others
+     */
+    private void compact() {
+        int live = 0;
+        int liveSorted = 0;
+        for (int i = 0; i < size; i++) {
+            int key = keys[i];
+            int count = removals.get(key);
+            if (count == 0) {
+                keys[live++] = key;
+            } else if (count == 1) {
+                removals.remove(key);
+            } else {
+                removals.put(key, count - 1);
+            }
+            if (i < sortedSize) {
+                liveSorted = live;
+            }
+        }
+        size = live;
+        sortedSize = liveSorted;
+        removedCount = 0;
+    }
+
+    /**
+     * @return index of the first key of the sorted part not less than the name and id
+     */
+    private int search(String name, int id) {
+        int low = 0;
+        int high = sortedSize;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (compare(keys[middle], name, id) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private void mergeSort(int[] source, int[] buffer, int from, int to) {
+        if (to - from < 2) {
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        mergeSort(source, buffer, from, middle);
+        mergeSort(source, buffer, middle, to);
+        merge(source, from, middle, middle, to, buffer, from);
+        System.arraycopy(buffer, from, source, from, to - from);
+    }
+
+    /**
+     * merges two sorted ranges of the source into the target from the index
+     */
+    private void merge(int[] source, int left, int leftEnd, int right, int rightEnd, int[] target, int index) {
+        while (left < leftEnd && right < rightEnd) {
+            if (compare(source[left], source[right]) <= 0) {
+                target[index++] = source[left++];
+            } else {
+                target[index++] = source[right++];
+            }
+        }
+        System.arraycopy(source, left, target, index, leftEnd - left);
+        System.arraycopy(source, right, target, index + leftEnd - left, rightEnd - right);
+    }
+
+    /**
+     * compares the movies of the keys the same way as {@link Movie#compareTo}
+     */
+    private int compare(int key, int other) {
+        int result = movies.compareNames(key, other);
+        return result != 0 ? result : Integer.compare(movies.id(key), movies.id(other));
+    }
+
+    /**
+     * compares the movie of the key with the name and id the same way as {@link Movie#compareTo}
+     */
+    private int compare(int key, String name, int id) {
+        int result = movies.compareName(key, name);
+        return result != 0 ? result : Integer.compare(movies.id(key), id);
+    }
+
+    /**
+     * compares names the same way as {@link Movie#compareTo}: shorter first, then by chars
+     */
+    static int compareNames(String name, String other) {
+        int result = Integer.compare(name.length(), other.length());
+        return result != 0 ? result : name.compareTo(other);
+    }
+}
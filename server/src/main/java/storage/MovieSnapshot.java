@@ -0,0 +1,37 @@
+package storage;
+
+import model.Movie;
+
+import java.util.Iterator;
+import java.util.function.Predicate;
+import java.util.stream.StreamSupport;
+
+/**
+ * Movies in sorted order as of one moment, later changes of the storage are not seen.
+ * A snapshot of a pinned version holds back reclamation of old versions until it is closed,
+ * a copied snapshot holds its copy until it is dropped.
+ */
+public interface MovieSnapshot extends Iterable<Movie>, AutoCloseable {
+
+    @Override
+    void close();
+
+    /**
+     * @param snapshot snapshot, closed with the filtered one
+     * @param filter   movies to keep
+     * @return snapshot of the movies of the snapshot accepted by the filter
+     */
+    static MovieSnapshot filter(MovieSnapshot snapshot, Predicate<Movie> filter) {
+        return new MovieSnapshot() {
+            @Override
+            public Iterator<Movie> iterator() {
+                return StreamSupport.stream(snapshot.spliterator(), false).filter(filter).iterator();
+            }
+
+            @Override
+            public void close() {
+                snapshot.close();
+            }
+        };
+    }
+}
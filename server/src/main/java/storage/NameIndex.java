@@ -0,0 +1,131 @@
+package storage;
+
+import utils.IntHashSet;
+
+import java.text.Normalizer;
+import java.util.*;
+
+/**
+ * Substring search of movie names with an index of trigrams:
+ * every three consecutive code points of a name point to the ids of the movies having them,
+ * so a search reads only the movies having all trigrams of the text.
+ * Names and texts are compared in NFC form and lower case of {@link Locale#ROOT},
+ * code points are used instead of chars, so Cyrillic and other names outside of Latin-1 work the same way.
+ * <p>
+ * The index keeps no names, only primitive sets of ids, one per trigram and one of all ids,
+ * so it adds no objects per movie. The engine checks the candidates against the names it stores,
+ * texts shorter than a trigram are checked against every movie.
+ * Adding or removing a name touches only its own trigrams, the engine passes the indexed name to remove it.
+ * <p>
+ * Not thread-safe: every engine or shard keeps its own index and guards it with its own lock,
+ * changes are made by its writers and searches hold its read lock,
+ * so writers of different shards never wait for each other.
+ */
+public class NameIndex {
+    private final IntHashSet ids = new IntHashSet();
+    private final HashMap<Long, IntHashSet> postings = new HashMap<>();
+
+    /**
+     * @param id   movie id, not indexed
+     * @param name movie name
+     */
+    public void add(int id, String name) {
+        ids.add(id);
+        for (long trigram : trigrams(normalize(name))) {
+            postings.computeIfAbsent(trigram, key -> new IntHashSet()).add(id);
+        }
+    }
+
+    /**
+     * @param id   movie id
+     * @param name name the movie is indexed with
+     */
+    public void remove(int id, String name) {
+        ids.remove(id);
+        for (long trigram : trigrams(normalize(name))) {
+            IntHashSet trigramIds = postings.get(trigram);
+            if (trigramIds != null) {
+                trigramIds.remove(id);
+                if (trigramIds.isEmpty()) {
+                    postings.remove(trigram);
+                }
+            }
+        }
+    }
+
+    public void clear() {
+        ids.clear();
+        postings.clear();
+    }
+
+    /**
+     * @param text normalized part of the name, not empty
+     * @return ids of the movies having all trigrams of the text, ascending;
+     * all ids if the text is shorter than a trigram
+     */
+    public int[] find(String text) {
+        long[] trigrams = trigrams(text);
+        if (trigrams.length == 0) {
+            return ids.toSortedArray();
+        }
+        IntHashSet[] sets = new IntHashSet[trigrams.length];
+        for (int i = 0; i < trigrams.length; i++) {
+            sets[i] = postings.get(trigrams[i]);
+            if (sets[i] == null) {
+                return new int[0];
+            }
+        }
+        // the smallest set gives the candidates, the others are probed
+        Arrays.sort(sets, Comparator.comparingInt(IntHashSet::size));
+        int[] candidates = sets[0].toSortedArray();
+        int count = 0;
+        for (int id : candidates) {
+            if (containsAll(sets, id)) {
+                candidates[count++] = id;
+            }
+        }
+        return Arrays.copyOf(candidates, count);
+    }
+
+    private static boolean containsAll(IntHashSet[] sets, int id) {
+        for (int i = 1; i < sets.length; i++) {
+            if (!sets[i].contains(id)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param name name or a part of it
+     * @return text to compare
+     */
+    public static String normalize(String name) {
+        return Normalizer.normalize(name, Normalizer.Form.NFC).toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * @param name name
+     * @param text normalized text
+     * @return true if the name contains the text
+     */
+    public static boolean contains(String name, String text) {
+        return normalize(name).contains(text);
+    }
+
+    /**
+     * @param text normalized text
+     * @return distinct trigrams, three code points of 21 bits in a long
+     */
+    private static long[] trigrams(String text) {
+        int[] codePoints = text.codePoints().toArray();
+        if (codePoints.length < 3) {
+            return new long[0];
+        }
+        long[] trigrams = new long[codePoints.length - 2];
+        for (int i = 0; i < trigrams.length; i++) {
+            trigrams[i] = (long) codePoints[i] << 42 | (long) codePoints[i + 1] << 21 | codePoints[i + 2];
+        }
+        return Arrays.stream(trigrams).distinct().toArray();
+    }
+}
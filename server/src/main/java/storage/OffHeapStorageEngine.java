@@ -0,0 +1,802 @@
+package storage;
+
+import model.*;
+import query.LongStats;
+import query.MovieField;
+import utils.IntIntHashMap;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * Keeps movies outside of the Java heap.
+ * A movie is a fixed-width record of 64 bytes in a slab of direct buffers,
+ * its name and screenwriter name are UTF-8 bytes in a separate string heap,
+ * the record holds their offsets and lengths.
+ * The sort order compares the UTF-8 names in the string heap without decoding them to strings.
+ * Slots of removed records are reused from a free list,
+ * the string heap is compacted when dead strings take more space than live ones.
+ * A snapshot copies the live records in sorted order and their strings into new direct slabs
+ * under the read lock, so it reads the movies as of one moment, writers wait only for the copy.
+ * With {@code -Dstorage.offheap.file=path} the slabs are memory-mapped from
+ * the file and from the file with the ".strings" suffix instead of direct memory,
+ * the files are scratch space and are truncated on start.
+ * <p>
+ * GC impact: the heap holds only the id index, the sort order and the free list,
+ * a few primitive arrays of about 20 bytes per movie, the name index,
+ * primitive int sets of about 10 bytes per distinct trigram of a name, and one object per 1 MB slab.
+ * Names are checked against the string heap, the name index keeps no copy of them.
+ * The collector has no per-movie objects to trace or copy, so pause times
+ * do not grow with the collection, the old generation grows only by the primitive arrays.
+ * Movie objects are created only when they are returned and die young.
+ * Direct slabs are limited by {@code -XX:MaxDirectMemorySize} and are freed only
+ * when the engine is collected, cleared storage reuses them, the slabs of a snapshot are freed when it is collected;
+ * mapped slabs are limited by the disk and paged by the OS.
+ */
+public class OffHeapStorageEngine extends LockedStorageEngine {
+
+    private static final int RECORD_SIZE = 64;
+    private static final int SLAB_RECORDS = 16384;
+    private static final int CHUNK_SIZE = 1 << 20;
+
+    // record layout
+    /**
+     * 0 in free slots
+     */
+    private static final int ID = 0;
+    private static final int X = 4;
+    private static final int Y = 8;
+    private static final int CREATION_DAY = 16;
+    private static final int OSCARS_COUNT = 20;
+    private static final int GOLDEN_PALM_COUNT = 24;
+    private static final int LENGTH = 28;
+    private static final int MPAA_RATING = 36;
+    /**
+     * 1 if the movie has a screenwriter
+     */
+    private static final int WRITER = 37;
+    private static final int EYE_COLOR = 38;
+    private static final int HAIR_COLOR = 39;
+    private static final int NATIONALITY = 40;
+    private static final int WEIGHT = 41;
+    /**
+     * offset and length of the name in the string heap
+     */
+    private static final int NAME = 45;
+    private static final int WRITER_NAME = 53;
+
+    private static final MpaaRating[] MPAA_RATINGS = MpaaRating.values();
+    private static final Color[] COLORS = Color.values();
+    private static final Country[] COUNTRIES = Country.values();
+
+    private final Slabs records;
+    private final Slabs strings;
+    /**
+     * count of ever used slots
+     */
+    private int slots;
+    private int[] freeSlots = new int[16];
+    private int freeCount;
+    private int count;
+    private int stringsEnd;
+    private long liveStringBytes;
+
+    private final IntIntHashMap slotById = new IntIntHashMap(-1);
+    private final MovieOrder order = new MovieOrder(new MovieOrder.Movies() {
+        @Override
+        public int compareNames(int slot, int other) {
+            return OffHeapStorageEngine.this.compareNames(slot, other);
+        }
+
+        @Override
+        public int compareName(int slot, String name) {
+            return OffHeapStorageEngine.this.compareName(slot, name);
+        }
+
+        @Override
+        public int id(int slot) {
+            return getInt(slot, ID);
+        }
+    });
+
+    /**
+     * @param file file to map the slabs from or null for direct memory
+     */
+    public OffHeapStorageEngine(String file) {
+        this.records = new Slabs(RECORD_SIZE * SLAB_RECORDS, open(file));
+        this.strings = new Slabs(CHUNK_SIZE, open(file == null ? null : file + ".strings"));
+    }
+
+    @Override
+    public String getType() {
+        return records.file == null ? "Off-heap direct buffers" : "Off-heap mapped file";
+    }
+
+    @Override
+    public void add(Movie movie) {
+        write(() -> {
+            int slot = allocateSlot();
+            record(slot).putInt(offset(slot) + ID, movie.getId())
+                    .putInt(offset(slot) + CREATION_DAY, (int) movie.getCreationDate().toEpochDay());
+            setFields(slot, movie);
+            slotById.put(movie.getId(), slot);
+            order.add(slot);
+            nameIndex.add(movie.getId(), movie.getName());
+            count++;
+        });
+    }
+
+    @Override
+    public void clear() {
+        write(() -> {
+            slots = 0;
+            freeCount = 0;
+            count = 0;
+            stringsEnd = 0;
+            liveStringBytes = 0;
+            slotById.clear();
+            order.clear();
+            nameIndex.clear();
+        });
+    }
+
+    @Override
+    public int size() {
+        return optimisticRead(() -> count);
+    }
+
+    @Override
+    public boolean contains(int id) {
+        return optimisticRead(() -> slotById.containsKey(id));
+    }
+
+    @Override
+    public Movie get(int id) {
+        return read(() -> {
+            int slot = slotById.get(id);
+            return slot < 0 ? null : toMovie(slot);
+        });
+    }
+
+    /**
+     * reads the candidate name from the string heap, no copy of the names is kept on the Java heap
+     */
+    @Override
+    protected Movie matchName(int id, String text) {
+        int slot = slotById.get(id);
+        return slot >= 0 && NameIndex.contains(readString(slot, NAME), text) ? toMovie(slot) : null;
+    }
+
+    @Override
+    public Movie head() {
+        return sortedRead(order, () -> {
+            if (order.size() == 0) {
+                throw new NoSuchElementException();
+            }
+            return toMovie(order.first());
+        });
+    }
+
+    @Override
+    public boolean update(int id, Movie movie) {
+        return write(() -> {
+            int slot = slotById.get(id);
+            if (slot < 0) {
+                return false;
+            }
+            order.remove(slot);
+            nameIndex.remove(id, readString(slot, NAME));
+            releaseStrings(slot);
+            setFields(slot, movie);
+            order.add(slot);
+            nameIndex.add(id, movie.getName());
+            compactStringsIfNeeded();
+            return true;
+        });
+    }
+
+    @Override
+    public boolean removeById(int id) {
+        return write(() -> {
+            int slot = slotById.get(id);
+            if (slot < 0) {
+                return false;
+            }
+            order.remove(slot);
+            freeSlot(slot);
+            compactStringsIfNeeded();
+            return true;
+        });
+    }
+
+    @Override
+    public int removeGreater(Movie movie) {
+        return write(() -> {
+            int removed = order.removeGreater(movie.getName(), this::freeSlot);
+            compactStringsIfNeeded();
+            return removed;
+        });
+    }
+
+    @Override
+    public int removeLower(Movie movie) {
+        return write(() -> {
+            int removed = order.removeLower(movie.getName(), this::freeSlot);
+            compactStringsIfNeeded();
+            return removed;
+        });
+    }
+
+    @Override
+    public Movie getMaxCreationDate() {
+        return read(() -> {
+            int max = -1;
+            for (int slot = 0; slot < slots; slot++) {
+                if (getInt(slot, ID) != 0 && (max < 0 || getInt(slot, CREATION_DAY) > getInt(max, CREATION_DAY))) {
+                    max = slot;
+                }
+            }
+            if (max < 0) {
+                throw new NoSuchElementException();
+            }
+            return toMovie(max);
+        });
+    }
+
+    @Override
+    public List<Movie> filterByCreationDate(LocalDate from, LocalDate to) {
+        long first = from.toEpochDay();
+        long last = to.toEpochDay();
+        return read(() -> {
+            // day in the high half and slot in the low half, so sorting the keys sorts slots by date
+            long[] found = new long[16];
+            int foundCount = 0;
+            for (int slot = 0; slot < slots; slot++) {
+                int day = getInt(slot, CREATION_DAY);
+                if (getInt(slot, ID) != 0 && day >= first && day <= last) {
+                    if (foundCount == found.length) {
+                        found = Arrays.copyOf(found, foundCount * 2);
+                    }
+                    found[foundCount++] = (long) day << 32 | slot;
+                }
+            }
+            Arrays.sort(found, 0, foundCount);
+            List<Movie> movies = new ArrayList<>(foundCount);
+            for (int i = 0; i < foundCount; i++) {
+                movies.add(toMovie((int) found[i]));
+            }
+            return movies;
+        });
+    }
+
+    @Override
+    public int countByMpaaRating(MpaaRating rating) {
+        byte code = code(rating);
+        return read(() -> {
+            int result = 0;
+            for (int slot = 0; slot < slots; slot++) {
+                if (getInt(slot, ID) != 0 && record(slot).get(offset(slot) + MPAA_RATING) == code) {
+                    result++;
+                }
+            }
+            return result;
+        });
+    }
+
+    @Override
+    public List<Movie> filterByMpaaRating(MpaaRating rating) {
+        byte code = code(rating);
+        return read(() -> {
+            List<Movie> movies = new ArrayList<>();
+            for (int slot = 0; slot < slots; slot++) {
+                if (getInt(slot, ID) != 0 && record(slot).get(offset(slot) + MPAA_RATING) == code) {
+                    movies.add(toMovie(slot));
+                }
+            }
+            return movies;
+        });
+    }
+
+    /**
+     * reads the fields from the records without creating movies,
+     * splits the slots among the threads of the common fork-join pool under the read lock,
+     * every thread keeps its own stats
+     */
+    @Override
+    public LongStats[] aggregate(MovieField field, MovieField group) {
+        int valueField = valueField(field);
+        boolean wide = field == MovieField.COORDINATES_Y || field == MovieField.LENGTH;
+        int groupField = group == null ? -1 : groupField(group);
+        boolean needsWriter = field == MovieField.SCREENWRITER_WEIGHT;
+        boolean groupNeedsWriter = group != null && group != MovieField.MPAA_RATING;
+        return read(() -> IntStream.range(0, slots).parallel()
+                .collect(() -> LongStats.forGroups(group), (stats, slot) -> {
+                    ByteBuffer record = record(slot);
+                    int offset = offset(slot);
+                    if (record.getInt(offset + ID) == 0) {
+                        return;
+                    }
+                    boolean hasWriter = record.get(offset + WRITER) != 0;
+                    if (needsWriter && !hasWriter) {
+                        return;
+                    }
+                    int ordinal = groupField < 0 || groupNeedsWriter && !hasWriter ? -1 : record.get(offset + groupField);
+                    LongStats.of(stats, ordinal).add(wide
+                            ? record.getLong(offset + valueField)
+                            : record.getInt(offset + valueField));
+                }, LongStats::combine));
+    }
+
+    /**
+     * @param field integer field
+     * @return offset of the field in the record
+     * @throws IllegalArgumentException the field is not stored as a number
+     */
+    private static int valueField(MovieField field) {
+        switch (field) {
+            case ID:
+                return ID;
+            case COORDINATES_X:
+                return X;
+            case COORDINATES_Y:
+                return Y;
+            case OSCARS_COUNT:
+                return OSCARS_COUNT;
+            case GOLDEN_PALM_COUNT:
+                return GOLDEN_PALM_COUNT;
+            case LENGTH:
+                return LENGTH;
+            case SCREENWRITER_WEIGHT:
+                return WEIGHT;
+            default:
+                throw new IllegalArgumentException(field.getFieldName() + " is not a number");
+        }
+    }
+
+    /**
+     * @param group enum field
+     * @return offset of the ordinal byte in the record
+     * @throws IllegalArgumentException the field is not an enum
+     */
+    private static int groupField(MovieField group) {
+        switch (group) {
+            case MPAA_RATING:
+                return MPAA_RATING;
+            case SCREENWRITER_EYE_COLOR:
+                return EYE_COLOR;
+            case SCREENWRITER_HAIR_COLOR:
+                return HAIR_COLOR;
+            case SCREENWRITER_NATIONALITY:
+                return NATIONALITY;
+            default:
+                throw new IllegalArgumentException(group.getFieldName() + " is not an enum");
+        }
+    }
+
+    @Override
+    public Iterable<Movie> getSortedByName() {
+        return () -> new Iterator<Movie>() {
+            private final int[] snapshot = sortedRead(order, () -> {
+                int[] ids = order.toArray();
+                for (int i = 0; i < ids.length; i++) {
+                    ids[i] = getInt(ids[i], ID);
+                }
+                return ids;
+            });
+            private int index;
+            private Movie next = advance();
+
+            /**
+             * @return next movie still stored or null
+             */
+            private Movie advance() {
+                while (index < snapshot.length) {
+                    int id = snapshot[index++];
+                    Movie movie = read(() -> {
+                        int slot = slotById.get(id);
+                        return slot < 0 ? null : toMovie(slot);
+                    });
+                    if (movie != null) {
+                        return movie;
+                    }
+                }
+                return null;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public Movie next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                Movie movie = next;
+                next = advance();
+                return movie;
+            }
+        };
+    }
+
+    @Override
+    public MovieSnapshot snapshot() {
+        OffHeapStorageEngine copy = sortedRead(order, () -> {
+            OffHeapStorageEngine records = new OffHeapStorageEngine(null);
+            for (int slot : order.toArray()) {
+                records.copyRecord(this, slot);
+            }
+            return records;
+        });
+        return new MovieSnapshot() {
+            @Override
+            public Iterator<Movie> iterator() {
+                return IntStream.range(0, copy.slots).mapToObj(copy::toMovie).iterator();
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    /**
+     * appends the record of the source engine and its strings
+     */
+    private void copyRecord(OffHeapStorageEngine source, int sourceSlot) {
+        int slot = allocateSlot();
+        record(slot).put(offset(slot), source.record(sourceSlot), offset(sourceSlot), RECORD_SIZE);
+        copyString(source, sourceSlot, slot, NAME);
+        if (record(slot).get(offset(slot) + WRITER) != 0) {
+            copyString(source, sourceSlot, slot, WRITER_NAME);
+        }
+        count++;
+    }
+
+    private void copyString(OffHeapStorageEngine source, int sourceSlot, int slot, int field) {
+        int sourceStart = source.getInt(sourceSlot, field);
+        int length = source.getInt(sourceSlot, field + 4);
+        int start = reserve(length);
+        strings.get(start / CHUNK_SIZE).put(start % CHUNK_SIZE,
+                source.strings.get(sourceStart / CHUNK_SIZE), sourceStart % CHUNK_SIZE, length);
+        record(slot).putInt(offset(slot) + field, start);
+        liveStringBytes += length;
+    }
+
+    /**
+     * writes fields of the movie except id and creation date to the record
+     */
+    private void setFields(int slot, Movie movie) {
+        ByteBuffer record = record(slot);
+        int offset = offset(slot);
+        record.putInt(offset + X, movie.getCoordinates().getX())
+                .putLong(offset + Y, movie.getCoordinates().getY())
+                .putInt(offset + OSCARS_COUNT, movie.getOscarsCount())
+                .putInt(offset + GOLDEN_PALM_COUNT, movie.getGoldenPalmCount())
+                .putLong(offset + LENGTH, movie.getLength())
+                .put(offset + MPAA_RATING, code(movie.getMpaaRating()));
+        writeString(slot, NAME, movie.getName());
+        Person writer = movie.getScreenwriter();
+        if (writer == null) {
+            record.put(offset + WRITER, (byte) 0);
+            return;
+        }
+        record.put(offset + WRITER, (byte) 1)
+                .put(offset + EYE_COLOR, code(writer.getEyeColor()))
+                .put(offset + HAIR_COLOR, code(writer.getHairColor()))
+                .put(offset + NATIONALITY, code(writer.getNationality()))
+                .putInt(offset + WEIGHT, writer.getWeight());
+        writeString(slot, WRITER_NAME, writer.getName());
+    }
+
+    /**
+     * creates movie from the record
+     */
+    private Movie toMovie(int slot) {
+        ByteBuffer record = record(slot);
+        int offset = offset(slot);
+        Person writer = null;
+        if (record.get(offset + WRITER) != 0) {
+            byte nationality = record.get(offset + NATIONALITY);
+            writer = new Person(readString(slot, WRITER_NAME),
+                    record.getInt(offset + WEIGHT),
+                    COLORS[record.get(offset + EYE_COLOR)],
+                    COLORS[record.get(offset + HAIR_COLOR)],
+                    nationality < 0 ? null : COUNTRIES[nationality]);
+        }
+        byte mpaaRating = record.get(offset + MPAA_RATING);
+        return new Movie(record.getInt(offset + ID),
+                readString(slot, NAME),
+                new Coordinates(record.getInt(offset + X), record.getLong(offset + Y)),
+                LocalDate.ofEpochDay(record.getInt(offset + CREATION_DAY)),
+                record.getInt(offset + OSCARS_COUNT),
+                record.getInt(offset + GOLDEN_PALM_COUNT),
+                record.getLong(offset + LENGTH),
+                mpaaRating < 0 ? null : MPAA_RATINGS[mpaaRating],
+                writer);
+    }
+
+    private int allocateSlot() {
+        if (freeCount > 0) {
+            return freeSlots[--freeCount];
+        }
+        return slots++;
+    }
+
+    private void freeSlot(int slot) {
+        slotById.remove(getInt(slot, ID));
+        nameIndex.remove(getInt(slot, ID), readString(slot, NAME));
+        releaseStrings(slot);
+        record(slot).putInt(offset(slot) + ID, 0);
+        if (freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+        }
+        freeSlots[freeCount++] = slot;
+        count--;
+    }
+
+    /**
+     * marks strings of the record as dead
+     */
+    private void releaseStrings(int slot) {
+        liveStringBytes -= getInt(slot, NAME + 4);
+        if (record(slot).get(offset(slot) + WRITER) != 0) {
+            liveStringBytes -= getInt(slot, WRITER_NAME + 4);
+        }
+    }
+
+    /**
+     * appends the string to the string heap and stores its offset and length in the field of the record
+     */
+    private void writeString(int slot, int field, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        int start = reserve(bytes.length);
+        strings.get(start / CHUNK_SIZE).put(start % CHUNK_SIZE, bytes);
+        record(slot).putInt(offset(slot) + field, start).putInt(offset(slot) + field + 4, bytes.length);
+        liveStringBytes += bytes.length;
+    }
+
+    private String readString(int slot, int field) {
+        int start = getInt(slot, field);
+        byte[] bytes = new byte[getInt(slot, field + 4)];
+        strings.get(start / CHUNK_SIZE).get(start % CHUNK_SIZE, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * compares names of the records as {@link MovieOrder#compareNames} does, decoding UTF-8 in place
+     */
+    private int compareNames(int slot, int other) {
+        int start = getInt(slot, NAME);
+        int length = getInt(slot, NAME + 4);
+        int otherStart = getInt(other, NAME);
+        ByteBuffer chunk = strings.get(start / CHUNK_SIZE);
+        ByteBuffer otherChunk = strings.get(otherStart / CHUNK_SIZE);
+        int i = start % CHUNK_SIZE;
+        int j = otherStart % CHUNK_SIZE;
+        int end = i + length;
+        int result = Integer.compare(charLength(chunk, i, length), charLength(otherChunk, j, getInt(other, NAME + 4)));
+        // names of the same length in chars end together while their code points are equal
+        while (result == 0 && i < end) {
+            result = compareCodePoints(codePoint(chunk, i), codePoint(otherChunk, j));
+            i += utf8Length(chunk.get(i));
+            j += utf8Length(otherChunk.get(j));
+        }
+        return result;
+    }
+
+    /**
+     * compares the name of the record with the name as {@link MovieOrder#compareNames} does, decoding UTF-8 in place
+     */
+    private int compareName(int slot, String name) {
+        int start = getInt(slot, NAME);
+        int length = getInt(slot, NAME + 4);
+        ByteBuffer chunk = strings.get(start / CHUNK_SIZE);
+        int i = start % CHUNK_SIZE;
+        int end = i + length;
+        int result = Integer.compare(charLength(chunk, i, length), name.length());
+        int k = 0;
+        while (result == 0 && i < end) {
+            int codePoint = name.codePointAt(k);
+            result = compareCodePoints(codePoint(chunk, i), codePoint);
+            i += utf8Length(chunk.get(i));
+            k += Character.charCount(codePoint);
+        }
+        return result;
+    }
+
+    /**
+     * @return length of the UTF-8 string in UTF-16 chars
+     */
+    private static int charLength(ByteBuffer chunk, int from, int length) {
+        int chars = 0;
+        for (int i = from; i < from + length; i++) {
+            int b = chunk.get(i) & 0xFF;
+            if ((b & 0xC0) != 0x80) {
+                chars += b >= 0xF0 ? 2 : 1;
+            }
+        }
+        return chars;
+    }
+
+    /**
+     * @param lead first byte of a UTF-8 code point
+     * @return count of its bytes
+     */
+    private static int utf8Length(byte lead) {
+        int b = lead & 0xFF;
+        return b < 0x80 ? 1 : b < 0xE0 ? 2 : b < 0xF0 ? 3 : 4;
+    }
+
+    /**
+     * @return code point of the UTF-8 bytes from the index
+     */
+    private static int codePoint(ByteBuffer chunk, int index) {
+        int b = chunk.get(index) & 0xFF;
+        switch (utf8Length((byte) b)) {
+            case 1:
+                return b;
+            case 2:
+                return (b & 0x1F) << 6 | chunk.get(index + 1) & 0x3F;
+            case 3:
+                return (b & 0x0F) << 12 | (chunk.get(index + 1) & 0x3F) << 6 | chunk.get(index + 2) & 0x3F;
+            default:
+                return (b & 0x07) << 18 | (chunk.get(index + 1) & 0x3F) << 12
+                        | (chunk.get(index + 2) & 0x3F) << 6 | chunk.get(index + 3) & 0x3F;
+        }
+    }
+
+    /**
+     * compares code points in the order of their UTF-16 chars, as {@link String#compareTo} does
+     */
+    private static int compareCodePoints(int codePoint, int other) {
+        if (codePoint == other) {
+            return 0;
+        }
+        int result = Integer.compare(firstChar(codePoint), firstChar(other));
+        return result != 0 ? result : Integer.compare(codePoint, other);
+    }
+
+    private static int firstChar(int codePoint) {
+        return codePoint < Character.MIN_SUPPLEMENTARY_CODE_POINT ? codePoint : Character.highSurrogate(codePoint);
+    }
+
+    /**
+     * @return offset of the free space for the string, a string never crosses chunks
+     * @throws IllegalArgumentException the string is longer than a chunk or the heap is full
+     */
+    private int reserve(int length) {
+        if (length > CHUNK_SIZE) {
+            throw new IllegalArgumentException("The string is too long: " + length + " bytes");
+        }
+        int start = stringsEnd;
+        if (start % CHUNK_SIZE + length > CHUNK_SIZE) {
+            start = (start / CHUNK_SIZE + 1) * CHUNK_SIZE;
+        }
+        if ((long) start + length > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("The string heap is full");
+        }
+        stringsEnd = start + length;
+        return start;
+    }
+
+    /**
+     * copies live strings to a temporary buffer and back to the start of the heap
+     * when dead strings take more space than live ones
+     */
+    private void compactStringsIfNeeded() {
+        if (stringsEnd <= CHUNK_SIZE || stringsEnd - liveStringBytes <= liveStringBytes) {
+            return;
+        }
+        ByteBuffer live = ByteBuffer.allocateDirect((int) liveStringBytes);
+        int position = 0;
+        for (int slot = 0; slot < slots; slot++) {
+            if (getInt(slot, ID) != 0) {
+                position = copyOut(slot, NAME, live, position);
+                if (record(slot).get(offset(slot) + WRITER) != 0) {
+                    position = copyOut(slot, WRITER_NAME, live, position);
+                }
+            }
+        }
+        stringsEnd = 0;
+        position = 0;
+        for (int slot = 0; slot < slots; slot++) {
+            if (getInt(slot, ID) != 0) {
+                position = copyIn(slot, NAME, live, position);
+                if (record(slot).get(offset(slot) + WRITER) != 0) {
+                    position = copyIn(slot, WRITER_NAME, live, position);
+                }
+            }
+        }
+    }
+
+    private int copyOut(int slot, int field, ByteBuffer target, int position) {
+        int start = getInt(slot, field);
+        int length = getInt(slot, field + 4);
+        target.put(position, strings.get(start / CHUNK_SIZE), start % CHUNK_SIZE, length);
+        return position + length;
+    }
+
+    private int copyIn(int slot, int field, ByteBuffer source, int position) {
+        int length = getInt(slot, field + 4);
+        int start = reserve(length);
+        strings.get(start / CHUNK_SIZE).put(start % CHUNK_SIZE, source, position, length);
+        record(slot).putInt(offset(slot) + field, start);
+        return position + length;
+    }
+
+    private ByteBuffer record(int slot) {
+        return records.get(slot / SLAB_RECORDS);
+    }
+
+    private static int offset(int slot) {
+        return slot % SLAB_RECORDS * RECORD_SIZE;
+    }
+
+    private int getInt(int slot, int field) {
+        return record(slot).getInt(offset(slot) + field);
+    }
+
+    private static byte code(Enum<?> value) {
+        return (byte) (value == null ? -1 : value.ordinal());
+    }
+
+    private static FileChannel open(String file) {
+        if (file == null) {
+            return null;
+        }
+        try {
+            return FileChannel.open(Path.of(file),
+                    StandardOpenOption.CREATE,
+                    StandardOpenOption.READ,
+                    StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open the storage file " + file, e);
+        }
+    }
+
+    /**
+     * equally sized off-heap buffers allocated on demand
+     */
+    private static class Slabs {
+        private final int size;
+        /**
+         * file to map the buffers from or null for direct buffers
+         */
+        private final FileChannel file;
+        private final List<ByteBuffer> buffers = new ArrayList<>();
+
+        Slabs(int size, FileChannel file) {
+            this.size = size;
+            this.file = file;
+        }
+
+        ByteBuffer get(int index) {
+            while (buffers.size() <= index) {
+                buffers.add(allocate(buffers.size()));
+            }
+            return buffers.get(index);
+        }
+
+        private ByteBuffer allocate(int index) {
+            if (file == null) {
+                return ByteBuffer.allocateDirect(size);
+            }
+            try {
+                return file.map(FileChannel.MapMode.READ_WRITE, (long) index * size, size);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,313 @@
+package storage;
+
+import model.Movie;
+import model.MpaaRating;
+import query.LongStats;
+import query.MovieField;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Splits movies into shards by id, each shard is an engine with its own lock and indexes,
+ * so writers of different shards do not wait for each other.
+ * Commands with an id touch one shard, queries of the whole storage run on all shards
+ * in parallel on the common fork-join pool and merge the results.
+ * Sorted movies are merged from the sorted shards without sorting.
+ * <p>
+ * Mutations hold a shared gate and a snapshot holds it exclusively while it pins the shards in parallel,
+ * so a snapshot sees every mutation in all of its shards or in none of them
+ * and reads the storage as of one moment; mutations wait only for the pinning.
+ */
+public class ShardedStorageEngine implements StorageEngine {
+    private final StorageEngine[] shards;
+    private final StampedLock gate = new StampedLock();
+
+    /**
+     * @param count   count of the shards
+     * @param factory creates the empty engine of the shard by its index
+     */
+    public ShardedStorageEngine(int count, IntFunction<StorageEngine> factory) {
+        shards = new StorageEngine[count];
+        for (int i = 0; i < count; i++) {
+            shards[i] = factory.apply(i);
+        }
+    }
+
+    /**
+     * @param id movie id
+     * @return shard keeping the movie
+     */
+    private StorageEngine shard(int id) {
+        return shards[Math.floorMod(Integer.hashCode(id), shards.length)];
+    }
+
+    @Override
+    public String getType() {
+        return shards.length + " shards of " + shards[0].getType();
+    }
+
+    @Override
+    public void add(Movie movie) {
+        mutate(() -> shard(movie.getId()).add(movie));
+    }
+
+    @Override
+    public void clear() {
+        mutate(() -> Arrays.stream(shards).parallel().forEach(StorageEngine::clear));
+    }
+
+    @Override
+    public int size() {
+        return Arrays.stream(shards).parallel().mapToInt(StorageEngine::size).sum();
+    }
+
+    @Override
+    public boolean contains(int id) {
+        return shard(id).contains(id);
+    }
+
+    @Override
+    public Movie get(int id) {
+        return shard(id).get(id);
+    }
+
+    @Override
+    public Movie head() {
+        return Arrays.stream(shards).parallel()
+                .map(ShardedStorageEngine::head)
+                .filter(Objects::nonNull)
+                .min(Comparator.naturalOrder())
+                .orElseThrow(NoSuchElementException::new);
+    }
+
+    /**
+     * @return first movie of the shard or null if it is empty
+     */
+    private static Movie head(StorageEngine shard) {
+        try {
+            return shard.head();
+        } catch (NoSuchElementException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public boolean update(int id, Movie movie) {
+        return mutate(() -> shard(id).update(id, movie));
+    }
+
+    @Override
+    public boolean removeById(int id) {
+        return mutate(() -> shard(id).removeById(id));
+    }
+
+    @Override
+    public int removeGreater(Movie movie) {
+        return mutate(() -> Arrays.stream(shards).parallel().mapToInt(shard -> shard.removeGreater(movie)).sum());
+    }
+
+    @Override
+    public int removeLower(Movie movie) {
+        return mutate(() -> Arrays.stream(shards).parallel().mapToInt(shard -> shard.removeLower(movie)).sum());
+    }
+
+    /**
+     * runs the mutation holding the gate shared, so no snapshot is being pinned meanwhile
+     */
+    private void mutate(Runnable mutation) {
+        long stamp = gate.readLock();
+        try {
+            mutation.run();
+        } finally {
+            gate.unlockRead(stamp);
+        }
+    }
+
+    private <T> T mutate(Supplier<T> mutation) {
+        long stamp = gate.readLock();
+        try {
+            return mutation.get();
+        } finally {
+            gate.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public Movie getMaxCreationDate() {
+        return Arrays.stream(shards).parallel()
+                .map(ShardedStorageEngine::maxCreationDate)
+                .filter(Objects::nonNull)
+                .max(Comparator.comparing(Movie::getCreationDate))
+                .orElseThrow(NoSuchElementException::new);
+    }
+
+    /**
+     * @return movie with the max creation date of the shard or null if it is empty
+     */
+    private static Movie maxCreationDate(StorageEngine shard) {
+        try {
+            return shard.getMaxCreationDate();
+        } catch (NoSuchElementException e) {
+            return null;
+        }
+    }
+
+    /**
+     * every shard searches its own name index
+     */
+    @Override
+    public List<Movie> findByName(String text, int limit) {
+        return Arrays.stream(shards).parallel()
+                .flatMap(shard -> shard.findByName(text, limit).stream())
+                .sorted(Comparator.comparingInt(Movie::getId))
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Movie> filterByCreationDate(LocalDate from, LocalDate to) {
+        List<Movie> movies = Arrays.stream(shards).parallel()
+                .flatMap(shard -> shard.filterByCreationDate(from, to).stream())
+                .collect(Collectors.toList());
+        movies.sort(Comparator.comparing(Movie::getCreationDate));
+        return movies;
+    }
+
+    @Override
+    public List<Movie> getLatest(int count) {
+        return Arrays.stream(shards).parallel()
+                .flatMap(shard -> shard.getLatest(count).stream())
+                .sorted(NEWEST_FIRST)
+                .limit(count)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * every shard keeps its own bounded heap, only the first movies of the shards are merged
+     */
+    @Override
+    public List<Movie> getTop(int count, Predicate<Movie> filter, Comparator<Movie> order) {
+        return Arrays.stream(shards).parallel()
+                .flatMap(shard -> shard.getTop(count, filter, order).stream())
+                .sorted(order)
+                .limit(count)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public int countByMpaaRating(MpaaRating rating) {
+        return Arrays.stream(shards).parallel().mapToInt(shard -> shard.countByMpaaRating(rating)).sum();
+    }
+
+    @Override
+    public List<Movie> filterByMpaaRating(MpaaRating rating) {
+        return Arrays.stream(shards).parallel()
+                .flatMap(shard -> shard.filterByMpaaRating(rating).stream())
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * every shard aggregates its own movies, only the stats of the groups are combined
+     */
+    @Override
+    public LongStats[] aggregate(MovieField field, MovieField group) {
+        return Arrays.stream(shards).parallel()
+                .map(shard -> shard.aggregate(field, group))
+                .reduce((stats, other) -> {
+                    LongStats.combine(stats, other);
+                    return stats;
+                })
+                .orElseGet(() -> LongStats.forGroups(group));
+    }
+
+    @Override
+    public Iterable<Movie> getSortedByName() {
+        // shards sort their pending keys and copy their orders when the iterators are made, so they are made in parallel
+        return () -> new MergingIterator<>(Arrays.stream(shards).parallel()
+                .map(shard -> shard.getSortedByName().iterator())
+                .collect(Collectors.toList()), Comparator.naturalOrder());
+    }
+
+    @Override
+    public boolean hasIndex(MovieField field) {
+        return shards[0].hasIndex(field);
+    }
+
+    @Override
+    public MovieSnapshot snapshot() {
+        return pin(StorageEngine::snapshot);
+    }
+
+    @Override
+    public MovieSnapshot snapshotByMpaaRating(MpaaRating rating) {
+        return pin(shard -> shard.snapshotByMpaaRating(rating));
+    }
+
+    @Override
+    public MovieSnapshot snapshotByCreationDate(LocalDate from, LocalDate to) {
+        return pin(shard -> shard.snapshotByCreationDate(from, to));
+    }
+
+    /**
+     * pins the shards in parallel holding the gate exclusively,
+     * if a shard fails the snapshots already taken are closed
+     *
+     * @param snapshot takes the sorted snapshot of a shard
+     * @return merged snapshots of the shards
+     */
+    private MovieSnapshot pin(Function<StorageEngine, MovieSnapshot> snapshot) {
+        MovieSnapshot[] pinned = new MovieSnapshot[shards.length];
+        RuntimeException[] failures = new RuntimeException[shards.length];
+        long stamp = gate.writeLock();
+        try {
+            IntStream.range(0, shards.length).parallel().forEach(i -> {
+                try {
+                    pinned[i] = snapshot.apply(shards[i]);
+                } catch (RuntimeException e) {
+                    failures[i] = e;
+                }
+            });
+        } finally {
+            gate.unlockWrite(stamp);
+        }
+        List<MovieSnapshot> snapshots = Arrays.stream(pinned).filter(Objects::nonNull).collect(Collectors.toList());
+        for (RuntimeException failure : failures) {
+            if (failure != null) {
+                snapshots.forEach(MovieSnapshot::close);
+                throw failure;
+            }
+        }
+        return new MovieSnapshot() {
+            @Override
+            public Iterator<Movie> iterator() {
+                List<Iterator<Movie>> iterators = new ArrayList<>(snapshots.size());
+                for (MovieSnapshot snapshot : snapshots) {
+                    iterators.add(snapshot.iterator());
+                }
+                return new MergingIterator<>(iterators, Comparator.naturalOrder());
+            }
+
+            @Override
+            public void close() {
+                snapshots.forEach(MovieSnapshot::close);
+            }
+        };
+    }
+
+    @Override
+    public List<Movie> getStorageAsList() {
+        try (MovieSnapshot snapshot = snapshot()) {
+            List<Movie> movies = new ArrayList<>(size());
+            snapshot.forEach(movies::add);
+            return movies;
+        }
+    }
+}
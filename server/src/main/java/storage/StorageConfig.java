@@ -0,0 +1,56 @@
+package storage;
+
+/**
+ * Storage settings passed as system properties, e.g. {@code -Dstorage.engine=columnar}
+ */
+public class StorageConfig {
+
+    /**
+     * "indexed" keeps movie objects in a skip list with hash and tree indexes,
+     * "columnar" keeps movie fields in parallel primitive arrays,
+     * "offheap" keeps movie records in direct or memory-mapped buffers
+     */
+    public static final String ENGINE = System.getProperty("storage.engine", "indexed");
+
+    /**
+     * file to map the off-heap records from, direct memory is used if it is not set
+     */
+    public static final String OFFHEAP_FILE = System.getProperty("storage.offheap.file");
+
+    /**
+     * count of the shards split by id, each is an engine of {@link #ENGINE}, 1 keeps one engine
+     */
+    public static final int SHARDS = Integer.getInteger("storage.shards", 1);
+
+    /**
+     * @return new empty engine chosen by {@link #ENGINE}, sharded if {@link #SHARDS} is more than 1
+     * @throws IllegalArgumentException unknown engine name or wrong count of the shards
+     */
+    public static StorageEngine createEngine() {
+        if (SHARDS < 1) {
+            throw new IllegalArgumentException("Wrong count of storage shards: " + SHARDS);
+        }
+        if (SHARDS == 1) {
+            return createEngine(OFFHEAP_FILE);
+        }
+        return new ShardedStorageEngine(SHARDS,
+                shard -> createEngine(OFFHEAP_FILE == null ? null : OFFHEAP_FILE + "." + shard));
+    }
+
+    /**
+     * @param offHeapFile file of the off-heap records or null
+     * @return new empty engine chosen by {@link #ENGINE}
+     */
+    private static StorageEngine createEngine(String offHeapFile) {
+        switch (ENGINE) {
+            case "indexed":
+                return new IndexedStorageEngine();
+            case "columnar":
+                return new ColumnarStorageEngine();
+            case "offheap":
+                return new OffHeapStorageEngine(offHeapFile);
+            default:
+                throw new IllegalArgumentException("Unknown storage engine: " + ENGINE);
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package storage;
+
+import model.Movie;
+import model.MpaaRating;
+import query.LongStats;
+import query.MovieField;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Predicate;
+
+/**
+ * Keeps stored movies and answers the queries of the commands.
+ * Movies are ordered by {@link Movie#compareTo}.
+ * Implementations are thread-safe, ids of the added movies are assigned by the caller.
+ */
+public interface StorageEngine {
+
+    /**
+     * later creation date first, then in sorted order
+     */
+    Comparator<Movie> NEWEST_FIRST = Comparator.comparing(Movie::getCreationDate).reversed()
+            .thenComparing(Comparator.naturalOrder());
+
+    /**
+     * @return short description of the storage for the info command
+     */
+    String getType();
+
+    /**
+     * add movie
+     *
+     * @param movie movie with unique id
+     */
+    void add(Movie movie);
+
+    /**
+     * cleans the storage
+     */
+    void clear();
+
+    /**
+     * @return count of movies
+     */
+    int size();
+
+    /**
+     * @param id movie id
+     * @return true if the movie exists
+     */
+    boolean contains(int id);
+
+    /**
+     * @param id movie id
+     * @return movie with the id or null if there is no such movie
+     */
+    Movie get(int id);
+
+    /**
+     * @return first movie in sorted order
+     * @throws NoSuchElementException the storage is empty
+     */
+    Movie head();
+
+    /**
+     * replaces movie keeping its id and creation date
+     *
+     * @param id    movie id
+     * @param movie new field values
+     * @return false if there is no movie with the id
+     */
+    boolean update(int id, Movie movie);
+
+    /**
+     * @param id movie id
+     * @return false if there is no movie with the id
+     */
+    boolean removeById(int id);
+
+    /**
+     * removes movies with names greater than the name of the movie
+     *
+     * @param movie movie to compare with
+     * @return count of removed movies
+     */
+    int removeGreater(Movie movie);
+
+    /**
+     * removes movies with names lower than the name of the movie
+     *
+     * @param movie movie to compare with
+     * @return count of removed movies
+     */
+    int removeLower(Movie movie);
+
+    /**
+     * @return any movie with the max creation date
+     * @throws NoSuchElementException the storage is empty
+     */
+    Movie getMaxCreationDate();
+
+    /**
+     * names are indexed by the engine and changed with the movies under the same lock
+     *
+     * @param text  part of the name, not empty
+     * @param limit max count of movies
+     * @return movies with names containing the text, ignoring case, in the order of their ids
+     */
+    List<Movie> findByName(String text, int limit);
+
+    /**
+     * @param from first day of the period
+     * @param to   last day of the period
+     * @return movies created in the period in creation date order
+     */
+    List<Movie> filterByCreationDate(LocalDate from, LocalDate to);
+
+    /**
+     * engines without an ordered date index keep the newest movies of a scan in a bounded heap
+     *
+     * @param count max count of movies, positive
+     * @return latest created movies in {@link #NEWEST_FIRST} order
+     */
+    default List<Movie> getLatest(int count) {
+        return getTop(count, movie -> true, NEWEST_FIRST);
+    }
+
+    /**
+     * the default implementation keeps the first movies of a snapshot scan in a bounded heap
+     *
+     * @param count  max count of movies, positive
+     * @param filter movies to choose from
+     * @param order  order of the movies
+     * @return first movies of the order
+     */
+    default List<Movie> getTop(int count, Predicate<Movie> filter, Comparator<Movie> order) {
+        BoundedHeap heap = new BoundedHeap(count, order);
+        try (MovieSnapshot movies = snapshot()) {
+            for (Movie movie : movies) {
+                if (filter.test(movie)) {
+                    heap.offer(movie);
+                }
+            }
+        }
+        return heap.toList();
+    }
+
+    /**
+     * @param rating rating or null
+     * @return count of movies with the rating
+     */
+    int countByMpaaRating(MpaaRating rating);
+
+    /**
+     * @param rating rating or null
+     * @return movies with the rating
+     */
+    List<Movie> filterByMpaaRating(MpaaRating rating);
+
+    /**
+     * statistics of an integer field grouped by an enum field, movies without a value of the field are skipped;
+     * the default implementation scans a snapshot, engines with columns read them without creating movies
+     *
+     * @param field integer field
+     * @param group enum field or null for one group of all movies
+     * @return stats of the groups as made by {@link LongStats#forGroups}
+     */
+    default LongStats[] aggregate(MovieField field, MovieField group) {
+        LongStats[] stats = LongStats.forGroups(group);
+        try (MovieSnapshot movies = snapshot()) {
+            for (Movie movie : movies) {
+                if (field.hasValue(movie)) {
+                    LongStats.of(stats, group == null ? -1 : group.getOrdinal(movie)).add(field.getLong(movie));
+                }
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * iteration does not block writers and is weakly consistent:
+     * it never fails and sees some of the changes made during the iteration
+     *
+     * @return movies in sorted order
+     */
+    Iterable<Movie> getSortedByName();
+
+    /**
+     * engines with versions pin the current one, the others copy the movies under their lock
+     *
+     * @return snapshot of the movies in sorted order as of one moment, must be closed after reading
+     */
+    MovieSnapshot snapshot();
+
+    /**
+     * @param field field of a condition
+     * @return true if the movies are found by the value of the field in an index, otherwise they are scanned
+     */
+    default boolean hasIndex(MovieField field) {
+        return field == MovieField.ID;
+    }
+
+    /**
+     * the default implementation filters a snapshot of all movies
+     *
+     * @param rating rating or null
+     * @return snapshot of the movies with the rating in sorted order, must be closed after reading
+     */
+    default MovieSnapshot snapshotByMpaaRating(MpaaRating rating) {
+        return MovieSnapshot.filter(snapshot(), movie -> movie.getMpaaRating() == rating);
+    }
+
+    /**
+     * the default implementation filters a snapshot of all movies
+     *
+     * @param from first day of the period
+     * @param to   last day of the period
+     * @return snapshot of the movies created in the period in sorted order, must be closed after reading
+     */
+    default MovieSnapshot snapshotByCreationDate(LocalDate from, LocalDate to) {
+        return MovieSnapshot.filter(snapshot(), movie ->
+                !movie.getCreationDate().isBefore(from) && !movie.getCreationDate().isAfter(to));
+    }
+
+    /**
+     * @return weakly consistent iterator over movies in sorted order
+     */
+    default Iterator<Movie> getIterator() {
+        return getSortedByName().iterator();
+    }
+
+    /**
+     * @return copy of the movies in sorted order
+     */
+    default List<Movie> getStorageAsList() {
+        List<Movie> movies = new ArrayList<>(size());
+        getSortedByName().forEach(movies::add);
+        return movies;
+    }
+}
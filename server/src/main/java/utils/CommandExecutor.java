@@ -1,12 +1,22 @@
 package utils;
 
+import messages.BatchRequest;
+import messages.BatchResponse;
+import messages.Message;
 import messages.Request;
 import messages.Response;
 import model.Movie;
 import model.MpaaRating;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import query.Aggregation;
+import query.MovieField;
+import query.MovieQuery;
+import query.QueryPlanner;
+import query.TopK;
+import storage.MovieSnapshot;
 
+import java.time.LocalDate;
 import java.util.*;
 
 /**
@@ -35,8 +45,13 @@ public class CommandExecutor {
                     "remove_greater {element} : удалить из коллекции все элементы, превышающие заданный\n" +
                     "remove_lower {element} : удалить из коллекции все элементы, меньшие, чем заданный\n" +
                     "max_by_creation_date : вывести любой объект из коллекции, значение поля creationDate которого является максимальным\n" +
+                    "filter_by_creation_date from to : вывести элементы, значение поля creationDate которых лежит в заданном периоде (даты в формате yyyy-mm-dd, включительно)\n" +
                     "count_by_mpaa_rating mpaaRating : вывести количество элементов, значение поля mpaaRating которых равно заданному\n" +
-                    "filter_by_mpaa_rating mpaaRating : вывести элементы, значение поля mpaaRating которых равно заданному\n";
+                    "filter_by_mpaa_rating mpaaRating : вывести элементы, значение поля mpaaRating которых равно заданному\n" +
+                    "query field op value [AND field op value ...] [LIMIT n] : вывести не больше n (по умолчанию " + MovieQuery.DEFAULT_LIMIT + ") элементов, удовлетворяющих всем условиям (операторы = != < <= > >=, значения с пробелами в кавычках, поля: " + MovieField.names(false) + ")\n" +
+                    "sum|avg|min|max|stats field [by groupField] : вывести сумму, среднее, минимум, максимум или всё вместе для числового поля (" + MovieField.names(true) + "), с группировкой по mpaaRating или полю screenwriter.nationality, screenwriter.eyeColor, screenwriter.hairColor\n" +
+                    "top_k field k : вывести k элементов с наибольшими значениями поля\n" +
+                    "find_by_name text [limit] : вывести не больше limit (по умолчанию " + MovieQuery.DEFAULT_LIMIT + ") элементов, название которых содержит текст без учёта регистра (текст с пробелами в кавычках)\n";
     static {
         Map<String, Command> cfmTemp = new HashMap<>();
         cfmTemp.put("help", CommandExecutor::help);
@@ -51,17 +66,59 @@ public class CommandExecutor {
         cfmTemp.put("remove_greater", CommandExecutor::removeGreater);
         cfmTemp.put("remove_lower", CommandExecutor::removeLower);
         cfmTemp.put("max_by_creation_date", CommandExecutor::maxByCreationDate);
+        cfmTemp.put("filter_by_creation_date", CommandExecutor::filterByCreationDate);
         cfmTemp.put("count_by_mpaa_rating", CommandExecutor::countByMpaaRating);
         cfmTemp.put("filter_by_mpaa_rating", CommandExecutor::filterByMpaaRating);
+        cfmTemp.put("query", CommandExecutor::query);
+        cfmTemp.put("top_k", CommandExecutor::topK);
+        cfmTemp.put("find_by_name", CommandExecutor::findByName);
+        for (Aggregation.Aggregate aggregate : Aggregation.Aggregate.values()) {
+            cfmTemp.put(aggregate.name().toLowerCase(Locale.ROOT), CommandExecutor::aggregate);
+        }
         COMMAND_FUNCTION_MAP = Collections.unmodifiableMap(cfmTemp);
     }
 
     /**
-     * Starts an endless loop of receiving commands from the console
+     * Executes the request
      * @param request client request
+     * @return response with the id of the request
      */
     public static Response startExecution(Request request) {
-        return executeCommand(request);
+        Response response = executeCommand(request);
+        response.setRequestId(request.getRequestId());
+        return response;
+    }
+
+    /**
+     * Executes requests of the batch one by one
+     * @param batch client requests
+     * @return responses in the order of the requests
+     */
+    public static BatchResponse startExecution(BatchRequest batch) {
+        List<Response> responses = new ArrayList<>(batch.getRequests().size());
+        for (Request request : batch.getRequests()) {
+            responses.add(startExecution(request));
+        }
+        BatchResponse response = new BatchResponse(responses);
+        response.setRequestId(batch.getRequestId());
+        return response;
+    }
+
+    /**
+     * Executes a request or a batch of requests
+     * @param message client message
+     * @return response or batch of responses
+     */
+    public static Message executeMessage(Message message) {
+        if (message instanceof BatchRequest) {
+            return startExecution((BatchRequest) message);
+        }
+        if (message instanceof Request) {
+            return startExecution((Request) message);
+        }
+        Response response = new Response("Unexpected message: " + message);
+        response.setRequestId(message.getRequestId());
+        return response;
     }
 
     /**
@@ -95,7 +152,7 @@ public class CommandExecutor {
      * @param request client request
      */
     private static Response info(Request request) {
-        return new Response("PriorityQueue\nDate: " + MovieStorage.getInitDate() + "\nCount of elements: " + MovieStorage.size());
+        return new Response(MovieStorage.getType() + "\nDate: " + MovieStorage.getInitDate() + "\nCount of elements: " + MovieStorage.size());
     }
 
     /**
@@ -104,10 +161,11 @@ public class CommandExecutor {
      */
     private static Response show(Request request) {
         StringBuilder sb = new StringBuilder();
-        List<Movie> movies = MovieStorage.getSortedListByName();
-        for (Movie movie : movies) {
-            String writer = movie.getScreenwriter() != null ? movie.getScreenwriter().toString() : "";
-            sb.append(movie).append("\n").append(writer).append("\n");
+        try (MovieSnapshot movies = MovieStorage.snapshot()) {
+            for (Movie movie : movies) {
+                String writer = movie.getScreenwriter() != null ? movie.getScreenwriter().toString() : "";
+                sb.append(movie).append("\n").append(writer).append("\n");
+            }
         }
         return new Response(sb.toString());
     }
@@ -127,7 +185,9 @@ public class CommandExecutor {
      */
     private static Response update(Request request) {
         int id = Integer.parseInt(request.getArgument());
-        MovieStorage.update(id, request.getMovie());
+        if (!MovieStorage.update(id, request.getMovie())) {
+            return new Response("The film with ID " + id + " does not exist.");
+        }
         return new Response("The fields of the film updated!");
     }
 
@@ -136,7 +196,10 @@ public class CommandExecutor {
      * @param request client request
      */
     private static Response removeById(Request request) {
-        MovieStorage.removeById(Integer.parseInt(request.getArgument()));
+        int id = Integer.parseInt(request.getArgument());
+        if (!MovieStorage.removeById(id)) {
+            return new Response("The film with ID " + id + " does not exist.");
+        }
         return new Response("Removed by ID!");
     }
 
@@ -163,7 +226,7 @@ public class CommandExecutor {
      * @param request client request
      */
     private static Response head(Request request) {
-        return new Response(MovieStorage.getIterator().next().toString());
+        return new Response(MovieStorage.head().toString());
     }
 
     /**
@@ -171,8 +234,8 @@ public class CommandExecutor {
      * @param request client request
      */
     private static Response removeGreater(Request request) {
-        MovieStorage.removeGreater(request.getMovie());
-        return new Response("remove greater command executed");
+        int count = MovieStorage.removeGreater(request.getMovie());
+        return new Response("remove greater command executed, " + count + " element(s) removed");
     }
 
     /**
@@ -180,8 +243,8 @@ public class CommandExecutor {
      * @param request client request
      */
     private static Response removeLower(Request request) {
-        MovieStorage.removeLower(request.getMovie());
-        return new Response("remove lower command executed");
+        int count = MovieStorage.removeLower(request.getMovie());
+        return new Response("remove lower command executed, " + count + " element(s) removed");
     }
 
     /**
@@ -192,6 +255,27 @@ public class CommandExecutor {
         return new Response(MovieStorage.getMaxCreationDate().toString());
     }
 
+    /**
+     * filter_by_creation_date command
+     * @param request client request with two dates
+     */
+    private static Response filterByCreationDate(Request request) {
+        String[] dates = request.getArgument().trim().split("\\s+");
+        if (dates.length != 2) {
+            throw new IllegalArgumentException("Two dates are expected: from to");
+        }
+        LocalDate from = LocalDate.parse(dates[0]);
+        LocalDate to = LocalDate.parse(dates[1]);
+        if (from.isAfter(to)) {
+            throw new IllegalArgumentException("The first date is after the second one");
+        }
+        StringBuilder sb = new StringBuilder();
+        for (Movie movie : MovieStorage.filterByCreationDate(from, to)) {
+            sb.append(movie).append("\n");
+        }
+        return new Response(sb.toString());
+    }
+
     /**
      * count_by_mpaa_rating command
      * @param request client request
@@ -214,4 +298,76 @@ public class CommandExecutor {
         }
         return new Response(sb.toString());
     }
+
+    /**
+     * query command
+     * @param request client request
+     */
+    private static Response query(Request request) {
+        QueryPlanner.Plan plan = QueryPlanner.plan(MovieQuery.parse(request.getArgument()));
+        List<Movie> movies = plan.execute();
+        StringBuilder sb = new StringBuilder("Plan: ").append(plan.getDescription())
+                .append("\n").append(movies.size()).append(" element(s) found\n");
+        for (Movie movie : movies) {
+            String writer = movie.getScreenwriter() != null ? movie.getScreenwriter().toString() : "";
+            sb.append(movie).append("\n").append(writer).append("\n");
+        }
+        return new Response(sb.toString());
+    }
+
+    /**
+     * sum, avg, min, max and stats commands
+     * @param request client request
+     */
+    private static Response aggregate(Request request) {
+        return new Response(Aggregation.parse(request.getCommand(), request.getArgument()).execute());
+    }
+
+    /**
+     * top_k command
+     * @param request client request
+     */
+    private static Response topK(Request request) {
+        TopK topK = TopK.parse(request.getArgument());
+        List<Movie> movies = topK.execute();
+        StringBuilder sb = new StringBuilder();
+        for (Movie movie : movies) {
+            sb.append(topK.getField().getFieldName()).append(": ").append(topK.getField().get(movie)).append("\n")
+                    .append(movie).append("\n");
+        }
+        return new Response(sb.toString());
+    }
+
+    /**
+     * find_by_name command
+     * @param request client request
+     */
+    private static Response findByName(Request request) {
+        String argument = request.getArgument() == null ? "" : request.getArgument().trim();
+        String text;
+        String rest;
+        char quote = argument.isEmpty() ? 0 : argument.charAt(0);
+        if (quote == '\'' || quote == '"') {
+            int end = argument.indexOf(quote, 1);
+            if (end < 0) {
+                throw new IllegalArgumentException("Closing quote is expected");
+            }
+            text = argument.substring(1, end);
+            rest = argument.substring(end + 1).trim();
+        } else {
+            String[] words = argument.split("\\s+", 2);
+            text = words[0];
+            rest = words.length > 1 ? words[1] : "";
+        }
+        if (text.isEmpty()) {
+            throw new IllegalArgumentException("Usage: find_by_name text [limit]");
+        }
+        int limit = rest.isEmpty() ? MovieQuery.DEFAULT_LIMIT : MovieQuery.parseLimit(rest);
+        List<Movie> movies = MovieStorage.findByName(text, limit);
+        StringBuilder sb = new StringBuilder().append(movies.size()).append(" element(s) found\n");
+        for (Movie movie : movies) {
+            sb.append(movie).append("\n");
+        }
+        return new Response(sb.toString());
+    }
 }
@@ -1,68 +1,39 @@
 package utils;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import messages.BatchRequest;
+import messages.Message;
+import messages.Request;
 
-import java.io.*;
+import java.io.IOException;
 
+/**
+ * Converts messages to bytes and back with {@link BinaryCodec}
+ */
 public class ConvertUtil {
-    private static final Logger logger = LoggerFactory.getLogger(ConvertUtil.class);
 
     public static byte[] convertObjectToByteArray(Object object) {
-        byte[] bytes = null;
-        ByteArrayOutputStream byteArrayOutputStream = null;
-        ObjectOutputStream objectOutputStream = null;
-
-        try {
-            byteArrayOutputStream = new ByteArrayOutputStream();
-            objectOutputStream = new ObjectOutputStream(byteArrayOutputStream);
-            objectOutputStream.writeObject(object);
-            objectOutputStream.flush();
-            bytes = byteArrayOutputStream.toByteArray();
-        } catch (IOException e) {
-            logger.error(e.getMessage());
-        }
-        try {
-            byteArrayOutputStream.close();
-        } catch (IOException e) {
-            logger.error(e.getMessage());
-        }
-        if (objectOutputStream != null) {
-            try {
-                objectOutputStream.close();
-            } catch (IOException e) {
-                logger.error(e.getMessage());
-            }
-        }
-        return bytes;
+        return BinaryCodec.encode(object);
     }
 
-    public static Object convertByteArrayToObject(byte[] bytes) {
-        Object object = null;
-        ByteArrayInputStream byteArrayInputStream = null;
-        ObjectInputStream objectInputStream = null;
-
-        try {
-            byteArrayInputStream = new ByteArrayInputStream(bytes);
-            objectInputStream = new ObjectInputStream(byteArrayInputStream);
-            object = objectInputStream.readObject();
-        } catch (IOException | ClassNotFoundException e) {
-            logger.error(e.getMessage());
-        }
+    /**
+     * @param bytes message bytes
+     * @return request or response
+     * @throws IOException unsupported version or malformed message
+     */
+    public static Object convertByteArrayToObject(byte[] bytes) throws IOException {
+        return BinaryCodec.decode(bytes);
+    }
 
-        try {
-            byteArrayInputStream.close();
-        } catch (IOException e) {
-            logger.error(e.getMessage());
+    /**
+     * @param bytes message bytes from a client
+     * @return request or batch of requests
+     * @throws IOException unsupported version, malformed message or a message of another type
+     */
+    public static Message convertByteArrayToRequest(byte[] bytes) throws IOException {
+        Object message = BinaryCodec.decode(bytes);
+        if (!(message instanceof Request) && !(message instanceof BatchRequest)) {
+            throw new IOException("Unexpected message from client: " + message.getClass().getSimpleName());
         }
-        if (objectInputStream != null) {
-            try {
-                objectInputStream.close();
-            } catch (IOException e) {
-                logger.error(e.getMessage());
-            }
-        }
-
-        return object;
+        return (Message) message;
     }
 }
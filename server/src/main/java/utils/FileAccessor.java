@@ -3,6 +3,7 @@ package utils;
 import model.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import storage.MovieSnapshot;
 
 import javax.xml.stream.*;
 import javax.xml.stream.events.XMLEvent;
@@ -160,11 +161,12 @@ public class FileAccessor {
                     if (!UniqueValuesUtil.isPersonNameAvailable(pb.name)) {
                         logger.warn("Illegal argument is found in the person");
                     }
-                    return new Person(pb.name,
+                    // the loader keeps all parsed movies before storing them, so screenwriters are shared at once
+                    return Interner.internPerson(new Person(pb.name,
                             pb.weight,
                             pb.eyeColor,
                             pb.hairColor,
-                            pb.nationality);
+                            pb.nationality));
                 }
             }
         } catch (XMLStreamException e) {
@@ -225,15 +227,14 @@ public class FileAccessor {
     /**
      * saves a collection of movies from memory to a file(specified in init)
      */
-    public static void writeXmlFile() {
+    public static synchronized void writeXmlFile() {
         XMLOutputFactory xof = XMLOutputFactory.newInstance();
         XMLStreamWriter xsw;
-        try (FileWriter stream = new FileWriter(xmlFileName)) {
+        try (FileWriter stream = new FileWriter(xmlFileName); MovieSnapshot movies = MovieStorage.snapshot()) {
             xsw = xof.createXMLStreamWriter(stream);
             xsw.writeStartDocument();
             XMLStreamWriter finalXsw = xsw;
             xsw.writeStartElement("movies");
-            List<Movie> movies = MovieStorage.getSortedListByName();
             for (Movie movie : movies) {
                 xsw.writeStartElement("movie");
                 convertMovieToXml(finalXsw, movie);
@@ -0,0 +1,141 @@
+package utils;
+
+import java.util.Arrays;
+
+/**
+ * Set of primitive int values, so nothing is boxed.
+ * Open addressing with linear probing, the table shrinks when it gets sparse.
+ * An entry takes an int and a boolean of the table, about 10 bytes at the usual load.
+ */
+public class IntHashSet {
+
+    private static final int MIN_CAPACITY = 16;
+
+    private int[] keys;
+    private boolean[] used;
+    private int size;
+    private int mask;
+
+    public IntHashSet() {
+        allocate(MIN_CAPACITY);
+    }
+
+    public boolean contains(int key) {
+        return indexOf(key) >= 0;
+    }
+
+    /**
+     * @param key key
+     * @return false if the key is in the set already
+     */
+    public boolean add(int key) {
+        int index = hash(key) & mask;
+        while (used[index]) {
+            if (keys[index] == key) {
+                return false;
+            }
+            index = (index + 1) & mask;
+        }
+        used[index] = true;
+        keys[index] = key;
+        if (++size * 4 > keys.length * 3) {
+            resize(keys.length * 2);
+        }
+        return true;
+    }
+
+    /**
+     * @param key key
+     * @return false if there is no such key
+     */
+    public boolean remove(int key) {
+        int index = indexOf(key);
+        if (index < 0) {
+            return false;
+        }
+        used[index] = false;
+        size--;
+        // shift back the following entries of the probe sequence, so no tombstones are needed
+        int next = (index + 1) & mask;
+        while (used[next]) {
+            int home = hash(keys[next]) & mask;
+            if (((next - home) & mask) >= ((next - index) & mask)) {
+                keys[index] = keys[next];
+                used[index] = true;
+                used[next] = false;
+                index = next;
+            }
+            next = (next + 1) & mask;
+        }
+        if (size * 8 < keys.length && keys.length > MIN_CAPACITY) {
+            resize(keys.length / 2);
+        }
+        return true;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        allocate(MIN_CAPACITY);
+        size = 0;
+    }
+
+    /**
+     * @return keys in ascending order
+     */
+    public int[] toSortedArray() {
+        int[] result = new int[size];
+        int count = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (used[i]) {
+                result[count++] = keys[i];
+            }
+        }
+        Arrays.sort(result);
+        return result;
+    }
+
+    private int indexOf(int key) {
+        int index = hash(key) & mask;
+        while (used[index]) {
+            if (keys[index] == key) {
+                return index;
+            }
+            index = (index + 1) & mask;
+        }
+        return -1;
+    }
+
+    private static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        used = new boolean[capacity];
+        mask = capacity - 1;
+    }
+
+    private void resize(int capacity) {
+        int[] oldKeys = keys;
+        boolean[] oldUsed = used;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldUsed[i]) {
+                int index = hash(oldKeys[i]) & mask;
+                while (used[index]) {
+                    index = (index + 1) & mask;
+                }
+                used[index] = true;
+                keys[index] = oldKeys[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package utils;
+
+/**
+ * Hash map with primitive int keys and values, so nothing is boxed.
+ * Open addressing with linear probing, the table shrinks when it gets sparse.
+ * <p>
+ * Not thread-safe, but {@link #get} and {@link #containsKey} may race with writes:
+ * they read the table once into locals and probe at most its length,
+ * so a racing read returns a wrong result instead of failing or looping,
+ * the caller detects the race and repeats the read, e.g. with an optimistic stamp.
+ */
+public class IntIntHashMap {
+
+    private static final int MIN_CAPACITY = 16;
+
+    private final int missingValue;
+    private int[] keys;
+    private int[] values;
+    private boolean[] used;
+    private int size;
+    private int mask;
+
+    /**
+     * @param missingValue value returned for absent keys
+     */
+    public IntIntHashMap(int missingValue) {
+        this.missingValue = missingValue;
+        allocate(MIN_CAPACITY);
+    }
+
+    /**
+     * @param key key
+     * @return value or the missing value
+     */
+    public int get(int key) {
+        int[] keys = this.keys;
+        int[] values = this.values;
+        boolean[] used = this.used;
+        // all lengths are powers of two, the shortest one bounds the probe if the arrays are from different tables
+        int mask = Math.min(Math.min(keys.length, values.length), used.length) - 1;
+        int index = hash(key) & mask;
+        for (int probes = 0; probes <= mask && used[index]; probes++) {
+            if (keys[index] == key) {
+                return values[index];
+            }
+            index = (index + 1) & mask;
+        }
+        return missingValue;
+    }
+
+    public boolean containsKey(int key) {
+        int[] keys = this.keys;
+        boolean[] used = this.used;
+        int mask = Math.min(keys.length, used.length) - 1;
+        int index = hash(key) & mask;
+        for (int probes = 0; probes <= mask && used[index]; probes++) {
+            if (keys[index] == key) {
+                return true;
+            }
+            index = (index + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * @param key   key
+     * @param value value
+     * @return previous value or the missing value
+     */
+    public int put(int key, int value) {
+        int index = hash(key) & mask;
+        while (used[index]) {
+            if (keys[index] == key) {
+                int previous = values[index];
+                values[index] = value;
+                return previous;
+            }
+            index = (index + 1) & mask;
+        }
+        used[index] = true;
+        keys[index] = key;
+        values[index] = value;
+        if (++size * 4 > keys.length * 3) {
+            resize(keys.length * 2);
+        }
+        return missingValue;
+    }
+
+    /**
+     * @param key key
+     * @return removed value or the missing value
+     */
+    public int remove(int key) {
+        int index = indexOf(key);
+        if (index < 0) {
+            return missingValue;
+        }
+        int removed = values[index];
+        used[index] = false;
+        size--;
+        // shift back the following entries of the probe sequence, so no tombstones are needed
+        int next = (index + 1) & mask;
+        while (used[next]) {
+            int home = hash(keys[next]) & mask;
+            if (((next - home) & mask) >= ((next - index) & mask)) {
+                keys[index] = keys[next];
+                values[index] = values[next];
+                used[index] = true;
+                used[next] = false;
+                index = next;
+            }
+            next = (next + 1) & mask;
+        }
+        if (size * 8 < keys.length && keys.length > MIN_CAPACITY) {
+            resize(keys.length / 2);
+        }
+        return removed;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        allocate(MIN_CAPACITY);
+        size = 0;
+    }
+
+    /**
+     * @return keys in no particular order
+     */
+    public int[] keys() {
+        int[] result = new int[size];
+        int count = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (used[i]) {
+                result[count++] = keys[i];
+            }
+        }
+        return result;
+    }
+
+    private int indexOf(int key) {
+        int index = hash(key) & mask;
+        while (used[index]) {
+            if (keys[index] == key) {
+                return index;
+            }
+            index = (index + 1) & mask;
+        }
+        return -1;
+    }
+
+    private static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new int[capacity];
+        used = new boolean[capacity];
+        mask = capacity - 1;
+    }
+
+    private void resize(int capacity) {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        boolean[] oldUsed = used;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldUsed[i]) {
+                int index = hash(oldKeys[i]) & mask;
+                while (used[index]) {
+                    index = (index + 1) & mask;
+                }
+                used[index] = true;
+                keys[index] = oldKeys[i];
+                values[index] = oldValues[i];
+            }
+        }
+    }
+}
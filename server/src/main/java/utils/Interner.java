@@ -0,0 +1,69 @@
+package utils;
+
+import model.Person;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.WeakHashMap;
+
+/**
+ * Keeps one canonical instance of equal values, like {@link String#intern} for any type,
+ * so movies with the same screenwriter share one person and one name string.
+ * Values are held weakly, a canonical instance is dropped when nothing else uses it.
+ * The map is split into stripes by hash, each with its own monitor, so concurrent writers rarely wait.
+ * Interned values must not be mutated.
+ *
+ * @param <T> value type with equals and hashCode
+ */
+public class Interner<T> {
+
+    public static final Interner<String> STRINGS = new Interner<>();
+    public static final Interner<Person> PERSONS = new Interner<>();
+
+    private static final int STRIPES = 32;
+
+    private final List<WeakHashMap<T, WeakReference<T>>> stripes = new ArrayList<>(STRIPES);
+
+    public Interner() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes.add(new WeakHashMap<>());
+        }
+    }
+
+    /**
+     * @param value value or null
+     * @return canonical instance equal to the value, the value itself if it is the first one
+     */
+    public T intern(T value) {
+        if (value == null) {
+            return null;
+        }
+        int hash = value.hashCode();
+        WeakHashMap<T, WeakReference<T>> canonical = stripes.get((hash ^ hash >>> 16) & (STRIPES - 1));
+        synchronized (canonical) {
+            WeakReference<T> reference = canonical.get(value);
+            T existing = reference == null ? null : reference.get();
+            if (existing != null) {
+                return existing;
+            }
+            canonical.put(value, new WeakReference<>(value));
+            return value;
+        }
+    }
+
+    /**
+     * @param person person or null
+     * @return canonical person with the canonical name
+     */
+    public static Person internPerson(Person person) {
+        if (person == null) {
+            return null;
+        }
+        String name = STRINGS.intern(person.getName());
+        if (name != person.getName()) {
+            person = new Person(name, person.getWeight(), person.getEyeColor(), person.getHairColor(), person.getNationality());
+        }
+        return PERSONS.intern(person);
+    }
+}
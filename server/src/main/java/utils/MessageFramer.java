@@ -0,0 +1,136 @@
+package utils;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Length-prefixed framing of messages on the wire.
+ * Every frame is a 4 byte big-endian payload length followed by the payload itself.
+ * One instance accumulates the bytes of one connection, so messages of any size
+ * are reassembled no matter how TCP splits or merges the packets.
+ * The body of a frame grows as its bytes arrive, so a client sending only a header
+ * does not make the server allocate the whole announced length.
+ */
+public class MessageFramer {
+
+    public static final int HEADER_SIZE = 4;
+    /**
+     * largest request accepted, a script batch of tens of thousands of added movies fits
+     */
+    public static final int MAX_FRAME_SIZE = 8 * 1024 * 1024;
+    /**
+     * size of the body allocated when a header arrives, it is doubled up to the frame length as bytes arrive
+     */
+    public static final int INITIAL_BODY_SIZE = 64 * 1024;
+    private static final int READ_BUFFER_SIZE = 8192;
+
+    private final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+    private final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+    private byte[] body;
+    private int bodyLength;
+    private int received;
+
+    /**
+     * wraps payload into a frame
+     *
+     * @param payload message bytes
+     * @return buffer ready for writing
+     */
+    public static ByteBuffer frame(byte[] payload) {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + payload.length);
+        buffer.putInt(payload.length);
+        buffer.put(payload);
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * reads all bytes currently available in the channel without blocking
+     *
+     * @param channel non-blocking channel
+     * @return completed frames payloads, possibly empty
+     * @throws EOFException the channel is closed by the other side
+     * @throws IOException  read error or invalid frame length
+     */
+    public List<byte[]> read(ReadableByteChannel channel) throws IOException {
+        List<byte[]> frames = Collections.emptyList();
+        int count;
+        while ((count = channel.read(readBuffer)) > 0) {
+            readBuffer.flip();
+            while (readBuffer.hasRemaining()) {
+                byte[] frame = accumulate();
+                if (frame != null) {
+                    if (frames.isEmpty()) {
+                        frames = new ArrayList<>();
+                    }
+                    frames.add(frame);
+                }
+            }
+            readBuffer.clear();
+        }
+        if (count < 0) {
+            throw new EOFException("Connection closed.");
+        }
+        return frames;
+    }
+
+    /**
+     * moves bytes from read buffer to the current frame
+     *
+     * @return completed frame payload or null
+     * @throws IOException invalid frame length
+     */
+    private byte[] accumulate() throws IOException {
+        if (body == null) {
+            transfer(readBuffer, header);
+            if (header.hasRemaining()) {
+                return null;
+            }
+            header.flip();
+            int length = header.getInt();
+            header.clear();
+            if (length < 0 || length > MAX_FRAME_SIZE) {
+                throw new IOException("Invalid frame length: " + length);
+            }
+            body = new byte[Math.min(length, INITIAL_BODY_SIZE)];
+            bodyLength = length;
+            received = 0;
+        }
+        int count = Math.min(readBuffer.remaining(), bodyLength - received);
+        if (received + count > body.length) {
+            body = Arrays.copyOf(body, grow(body.length, received + count, bodyLength));
+        }
+        readBuffer.get(body, received, count);
+        received += count;
+        if (received < bodyLength) {
+            return null;
+        }
+        byte[] frame = body;
+        body = null;
+        return frame;
+    }
+
+    /**
+     * @param size   current size of the body
+     * @param needed size needed for the received bytes
+     * @param length frame length
+     * @return doubled size, at least the needed one and at most the frame length
+     */
+    public static int grow(int size, int needed, int length) {
+        return (int) Math.min(length, Math.max(size * 2L, needed));
+    }
+
+    private static void transfer(ByteBuffer from, ByteBuffer to) {
+        int count = Math.min(from.remaining(), to.remaining());
+        int limit = from.limit();
+        from.limit(from.position() + count);
+        to.put(from);
+        from.limit(limit);
+    }
+}
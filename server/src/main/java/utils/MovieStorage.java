@@ -2,22 +2,46 @@ package utils;
 
 import model.Movie;
 import model.MpaaRating;
+import model.Person;
+import query.LongStats;
+import query.MovieField;
+import storage.MovieSnapshot;
+import storage.StorageConfig;
+import storage.StorageEngine;
 
+import java.time.LocalDate;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
 
 /**
  * Manipulate with stored movies
+ * <p>
+ * Movies are kept by the storage engine chosen with {@code -Dstorage.engine},
+ * split into {@code -Dstorage.shards} engines by id,
+ * the storage assigns ids of the added movies.
+ * Every engine also keeps the names in a trigram index for the search by a part of the name.
+ * Thread-safe, iteration of the sorted movies does not block writers,
+ * a snapshot keeps the movies of one moment while writers go on.
  */
 public class MovieStorage {
-    private static final PriorityQueue<Movie> STORAGE = new PriorityQueue<>();
+    private static final StorageEngine ENGINE = StorageConfig.createEngine();
     private static final Date initDate = new Date();
-    private static int currentId = 0;
+    private static final AtomicInteger currentId = new AtomicInteger();
 
     public static Date getInitDate() {
         return initDate;
     }
 
+    /**
+     * obtaining storage type
+     *
+     * @return storage description
+     */
+    public static String getType() {
+        return ENGINE.getType();
+    }
+
     /**
      * add movie
      *
@@ -25,10 +49,7 @@ public class MovieStorage {
      */
     public static void add(Movie movie) {
         movie.setId(generateMovieId());
-        STORAGE.add(movie);
-        if (movie.getId() > currentId) {
-            currentId = movie.getId();
-        }
+        ENGINE.add(intern(movie));
     }
 
     /**
@@ -37,23 +58,33 @@ public class MovieStorage {
      * @return currentId
      */
     public static int generateMovieId() {
-        return ++currentId;
+        return currentId.incrementAndGet();
     }
 
     /**
      * cleans the collection
      */
     public static void clear() {
-        STORAGE.clear();
+        ENGINE.clear();
     }
 
     /**
      * obtaining storage iterator
      *
-     * @return Storage.iterator()
+     * @return weakly consistent iterator over movies sorted by name
      */
     public static Iterator<Movie> getIterator() {
-        return STORAGE.iterator();
+        return ENGINE.getIterator();
+    }
+
+    /**
+     * obtaining first movie sorted by name
+     *
+     * @return head movie
+     * @throws NoSuchElementException the storage is empty
+     */
+    public static Movie head() {
+        return ENGINE.head();
     }
 
     /**
@@ -62,50 +93,90 @@ public class MovieStorage {
      * @return storage size
      */
     public static int size() {
-        return STORAGE.size();
+        return ENGINE.size();
+    }
+
+    /**
+     * checks movie existence
+     *
+     * @param id movie id
+     * @return true if the movie exists
+     */
+    public static boolean contains(int id) {
+        return ENGINE.contains(id);
+    }
+
+    /**
+     * obtaining movie by id
+     *
+     * @param id movie id
+     * @return movie or null if there is no movie with the id
+     */
+    public static Movie get(int id) {
+        return ENGINE.get(id);
     }
 
     /**
-     * updates movie
+     * updates movie, the updated movie replaces the old one keeping its id and creation date
      *
      * @param id
      * @param movie
+     * @return false if there is no movie with the id
      */
-    public static void update(int id, Movie movie) {
-        STORAGE.stream().sequential().filter(m -> m.getId() == id).forEach(m -> m.update(movie.getName(),
-                movie.getCoordinates(),
-                movie.getOscarsCount(),
-                movie.getGoldenPalmCount(),
-                movie.getLength(),
-                movie.getMpaaRating(),
-                movie.getScreenwriter()));
+    public static boolean update(int id, Movie movie) {
+        return ENGINE.update(id, intern(movie));
+    }
+
+    /**
+     * replaces the screenwriter of the movie with its canonical instance,
+     * so a person writing many movies is stored once; names of movies do not repeat and are not interned.
+     * Screenwriters of the loader and the decoded requests are interned already, this covers any other caller
+     *
+     * @param movie movie to be stored
+     * @return the same movie
+     */
+    private static Movie intern(Movie movie) {
+        Person screenwriter = Interner.internPerson(movie.getScreenwriter());
+        if (screenwriter != movie.getScreenwriter()) {
+            movie.update(movie.getName(),
+                    movie.getCoordinates(),
+                    movie.getOscarsCount(),
+                    movie.getGoldenPalmCount(),
+                    movie.getLength(),
+                    movie.getMpaaRating(),
+                    screenwriter);
+        }
+        return movie;
     }
 
     /**
      * remove movie by id
      *
      * @param id
+     * @return false if there is no movie with the id
      */
-    public static void removeById(int id) {
-        STORAGE.removeIf(m -> m.getId() == id);
+    public static boolean removeById(int id) {
+        return ENGINE.removeById(id);
     }
 
     /**
      * remove greater movie
      *
      * @param movie
+     * @return count of removed movies
      */
-    public static void removeGreater(Movie movie) {
-        STORAGE.removeIf(m -> movie.compareTo(m) < 0);
+    public static int removeGreater(Movie movie) {
+        return ENGINE.removeGreater(movie);
     }
 
     /**
      * remove lower movie
      *
      * @param movie
+     * @return count of removed movies
      */
-    public static void removeLower(Movie movie) {
-        STORAGE.removeIf(m -> movie.compareTo(m) > 0);
+    public static int removeLower(Movie movie) {
+        return ENGINE.removeLower(movie);
     }
 
     /**
@@ -114,7 +185,51 @@ public class MovieStorage {
      * @return movie with max date
      */
     public static Movie getMaxCreationDate() {
-        return STORAGE.stream().max(Comparator.comparing(Movie::getCreationDate)).orElseThrow(NoSuchElementException::new);
+        return ENGINE.getMaxCreationDate();
+    }
+
+    /**
+     * obtaining movies with names containing the text, ignoring case
+     *
+     * @param text  part of the name
+     * @param limit max count of movies
+     * @return movies in the order of their ids
+     */
+    public static List<Movie> findByName(String text, int limit) {
+        return ENGINE.findByName(text, limit);
+    }
+
+    /**
+     * obtaining movies created in the period
+     *
+     * @param from first day of the period
+     * @param to   last day of the period
+     * @return movies in creation date order
+     */
+    public static List<Movie> filterByCreationDate(LocalDate from, LocalDate to) {
+        return ENGINE.filterByCreationDate(from, to);
+    }
+
+    /**
+     * obtaining latest created movies
+     *
+     * @param count max count of movies
+     * @return movies from the newest one
+     */
+    public static List<Movie> getLatest(int count) {
+        return ENGINE.getLatest(count);
+    }
+
+    /**
+     * obtaining first movies of an order
+     *
+     * @param count  max count of movies
+     * @param filter movies to choose from
+     * @param order  order of the movies
+     * @return movies in the order
+     */
+    public static List<Movie> getTop(int count, Predicate<Movie> filter, Comparator<Movie> order) {
+        return ENGINE.getTop(count, filter, order);
     }
 
     /**
@@ -124,7 +239,7 @@ public class MovieStorage {
      * @return count
      */
     public static int countByMpaaRating(MpaaRating rating) {
-        return (int) STORAGE.stream().filter(movie -> movie.getMpaaRating() != null).filter(movie -> movie.getMpaaRating().equals(rating)).count();
+        return ENGINE.countByMpaaRating(rating);
     }
 
     /**
@@ -134,7 +249,49 @@ public class MovieStorage {
      * @return movies
      */
     public static List<Movie> filterByMpaaRating(MpaaRating rating) {
-        return STORAGE.stream().filter(movie -> movie.getMpaaRating() != null).filter(movie -> movie.getMpaaRating().equals(rating)).collect(Collectors.toList());
+        return ENGINE.filterByMpaaRating(rating);
+    }
+
+    /**
+     * @param field field of a condition
+     * @return true if the movies are found by the value of the field in an index
+     */
+    public static boolean hasIndex(MovieField field) {
+        return ENGINE.hasIndex(field);
+    }
+
+    /**
+     * obtaining movies with the rating sorted by name as of one moment,
+     * the snapshot must be closed after reading
+     *
+     * @param rating rating or null
+     * @return sorted movies
+     */
+    public static MovieSnapshot snapshotByMpaaRating(MpaaRating rating) {
+        return ENGINE.snapshotByMpaaRating(rating);
+    }
+
+    /**
+     * obtaining movies created in the period sorted by name as of one moment,
+     * the snapshot must be closed after reading
+     *
+     * @param from first day of the period
+     * @param to   last day of the period
+     * @return sorted movies
+     */
+    public static MovieSnapshot snapshotByCreationDate(LocalDate from, LocalDate to) {
+        return ENGINE.snapshotByCreationDate(from, to);
+    }
+
+    /**
+     * statistics of an integer field grouped by an enum field
+     *
+     * @param field integer field
+     * @param group enum field or null
+     * @return stats of the groups as made by {@link LongStats#forGroups}
+     */
+    public static LongStats[] aggregate(MovieField field, MovieField group) {
+        return ENGINE.aggregate(field, group);
     }
 
     /**
@@ -143,17 +300,26 @@ public class MovieStorage {
      * @return list with movies
      */
     public static List<Movie> getStorageAsList() {
-        return new ArrayList<>(STORAGE);
+        return ENGINE.getStorageAsList();
     }
 
     /**
-     * obtaining sorted list
+     * obtaining movies sorted by name without copying,
+     * iteration does not block writers and is weakly consistent
      *
-     * @return movies
+     * @return sorted movies
+     */
+    public static Iterable<Movie> getSortedByName() {
+        return ENGINE.getSortedByName();
+    }
+
+    /**
+     * obtaining movies sorted by name as of one moment without blocking writers,
+     * the snapshot must be closed after reading
+     *
+     * @return sorted movies
      */
-    public static List<Movie> getSortedListByName() {
-        List<Movie> movies = getStorageAsList();
-        movies.sort(Movie::compareTo);
-        return movies;
+    public static MovieSnapshot snapshot() {
+        return ENGINE.snapshot();
     }
-}
\ No newline at end of file
+}